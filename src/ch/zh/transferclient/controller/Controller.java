@@ -48,6 +48,9 @@ public class Controller implements MouseListener
     protected ScheduledExecutorService executor_service;
     protected ScheduledExecutorService executor_service_for_non_repeating_tasks;
     
+    /** Watcher of the results and receipts folders (null if the folders are only polled). */
+    protected Controller_Watcher       watcher;
+    
     
     /**
      * Constructs a SuperController object.
@@ -70,6 +73,26 @@ public class Controller implements MouseListener
         Controller_Deactivation.deactivation(this);
         }
         
+    /**
+     * Waits until the executor service has terminated after the deactivation, i.e. until the running batch has been
+     * finished (called when the transfer-client is exited).
+     */
+    public void await_termination()
+        {
+        if (this.executor_service == null)
+            {
+            return;
+            }
+        try
+            {
+            this.executor_service.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+        }
+        
     // MouseListener
     // https://stackoverflow.com/questions/11453240/mouselistener-in-java-swing-sometimes-not-respond
     @Override
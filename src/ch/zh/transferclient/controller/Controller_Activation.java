@@ -62,6 +62,7 @@ public class Controller_Activation
         ThreadAnalyzer.println(Thread.currentThread(), "EDT-Thread", "Aktivierung", "Aktivierung des Transfer-Clients 2.4");
         
         controller.active = true;
+        Processing.set_deactivation_requested(false);
         
         // @formatter:on
         //The following elements are accessed only by the EDT thread
@@ -154,6 +155,28 @@ public class Controller_Activation
             }
         
         
+        // ------------------------------------------------------------//
+        // WatchService fuer den Resultate- und Quittungsordner         //
+        // ------------------------------------------------------------//
+        // Neue Files werden durch den WatchService praktisch sofort
+        // erkannt. Das Polling dient dann nur noch als Sicherheits-
+        // durchlauf (z.B. fuer Netzlaufwerke, die keine Events liefern).
+        controller.watcher = null;
+        long delay         = controller.properties.get_delay();
+        if (controller.properties.get_watchservice())
+            {
+            try
+                {
+                controller.watcher = new Controller_Watcher(controller);
+                delay              = controller.properties.get_watchservice_sweep_delay();
+                }
+            catch (Exception e)
+                {
+                Logger.error(e);
+                Logger.info("ACTIVATION: WATCHSERVICE NOT AVAILABLE, FOLDERS WILL BE POLLED");
+                }
+            }
+        
         // --------------------------------------------------------------------//
         // ExecutorService fuer sich wiederholgende Aufgaben wird eingerichtet //
         // --------------------------------------------------------------------//
@@ -165,7 +188,7 @@ public class Controller_Activation
                 {
                 Processing.process(controller.properties, controller.gui);
                 }
-            }, initialDelay, controller.properties.get_delay(), TimeUnit.MILLISECONDS);
+            }, initialDelay, delay, TimeUnit.MILLISECONDS);
         
         // --------------------------------------------------------------------------//
         // ExecutorService fuer sich nicht wiederholgende Aufgaben wird eingerichtet //
@@ -177,6 +200,12 @@ public class Controller_Activation
             public void run()
                 {
                 
+                // STEP 0: STARTING THE WATCHER
+                if (controller.watcher != null)
+                    {
+                    controller.watcher.start();
+                    }
+                
                 // STEP 1: INFORMING USER
                 // In order to guarantee thread safety, SwingUtilities.invokeLater()
                 // is used for accessing the GUI elements.
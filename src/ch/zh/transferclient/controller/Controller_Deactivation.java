@@ -19,6 +19,7 @@ package ch.zh.transferclient.controller;
 import java.awt.Font;
 
 import ch.zh.transferclient.main.*;
+import ch.zh.transferclient.processing.Processing;
 
 /**
  * This class is used to deactivate the transfer-client.
@@ -49,6 +50,9 @@ public class Controller_Deactivation
         
         controller.active = false;
         
+        // Der Executor-Thread beendet den laufenden Batch nach dem aktuellen File.
+        Processing.set_deactivation_requested(true);
+        
         controller.gui.get_button_deactivation().setEnabled(false);
         controller.gui.get_button_activation().setEnabled(true);
         controller.gui.get_button_autoactivation().setEnabled(true);
@@ -64,6 +68,10 @@ public class Controller_Deactivation
             {
             try
                 {
+                if (controller.watcher != null)
+                    {
+                    controller.watcher.stop();
+                    }
                 controller.executor_service.shutdown();
                 controller.executor_service_for_non_repeating_tasks.shutdown();
                 
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.controller;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ch.zh.transferclient.main.Logger;
+import ch.zh.transferclient.processing.Processing;
+import ch.zh.transferclient.processing.Processing_InputStability;
+import ch.zh.transferclient.util.ThreadAnalyzer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * This class is used to watch the results folder and the sedex receipts folder (java.nio WatchService). As soon as a
+ * file is created or modified, an execution of the processing task is submitted to the executor service of the
+ * controller. Polling is then only used as a safety sweep.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Controller_Watcher implements Runnable
+    
+    {
+    
+    /** The controller to be used. */
+    private final Controller    controller;
+    
+    /** The watch service. */
+    private final WatchService  watch_service;
+    
+    /** Flag which indicates whether an execution of the processing task has already been submitted. */
+    private final AtomicBoolean run_pending = new AtomicBoolean(false);
+    
+    /** The thread which is waiting for the watch events. */
+    private Thread              thread;
+    
+    /**
+     * Constructs a Controller_Watcher object and registers the results folder and the sedex receipts folder.
+     *
+     * @param  controller  The controller to be used.
+     * @throws IOException The watch service cannot be created or a folder cannot be registered.
+     */
+    protected Controller_Watcher(final Controller controller) throws IOException
+        {
+        this.controller    = controller;
+        this.watch_service = FileSystems.getDefault().newWatchService();
+        
+        try
+            {
+            Paths.get(controller.properties.get_folder_results()).register(this.watch_service, ENTRY_CREATE, ENTRY_MODIFY);
+            Paths.get(controller.properties.get_sedex_dir_receipts()).register(this.watch_service, ENTRY_CREATE, ENTRY_MODIFY);
+            }
+        catch (IOException e)
+            {
+            this.watch_service.close();
+            throw e;
+            }
+        }
+        
+    /**
+     * Starts the thread which is waiting for the watch events.
+     */
+    protected synchronized void start()
+        {
+        this.thread = new Thread(this, "TFC-Watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        
+        // Files, die bereits vor der Aktivierung vorhanden waren,
+        // loesen kein Event aus und werden deshalb sofort verarbeitet.
+        this.trigger();
+        }
+        
+    /**
+     * Stops the watch service (the waiting thread terminates thereupon).
+     */
+    protected synchronized void stop()
+        {
+        try
+            {
+            this.watch_service.close();
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            }
+        }
+        
+    /**
+     * Waits for watch events and triggers the processing task.
+     */
+    @Override
+    public void run()
+        {
+        
+        ThreadAnalyzer.println(Thread.currentThread(), "Watcher-Thread", "Watching", "Warten auf neue Files");
+        
+        try
+            {
+            while (true)
+                {
+                WatchKey key = this.watch_service.take();
+                
+                // Die einzelnen Events muessen nicht ausgewertet werden,
+                // da die Verarbeitung die Ordner ohnehin vollstaendig
+                // abarbeitet (auch im Falle eines OVERFLOW-Events).
+                key.pollEvents();
+                key.reset();
+                
+                this.trigger();
+                }
+            }
+        catch (InterruptedException | ClosedWatchServiceException e)
+            {
+            // Der Watch Service wurde bei der Deaktivierung geschlossen.
+            }
+            
+        }
+        
+    /**
+     * Submits an execution of the processing task to the executor service of the controller after a delay.
+     *
+     * @param delay The delay in milliseconds.
+     */
+    private void schedule_trigger(final long delay)
+        {
+        try
+            {
+            this.controller.executor_service.schedule(new Runnable()
+                {
+                @Override
+                public void run()
+                    {
+                    trigger();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        catch (RejectedExecutionException e)
+            {
+            // Der Executor Service wurde bei der Deaktivierung heruntergefahren.
+            }
+        }
+        
+    /**
+     * Submits an execution of the processing task to the executor service of the controller. Several events which
+     * occur while an execution is pending are coalesced into this single execution.
+     */
+    private void trigger()
+        {
+        
+        if (!this.run_pending.compareAndSet(false, true))
+            {
+            return;
+            }
+            
+        try
+            {
+            this.controller.executor_service.execute(new Runnable()
+                {
+                @Override
+                public void run()
+                    {
+                    run_pending.set(false);
+                    
+                    boolean files_remaining = Processing.process(controller.properties, controller.gui);
+                    
+                    // Falls der Batch wegen BATCH_SIZE oder BATCH_TIME_BUDGET
+                    // abgebrochen worden ist, wird sofort ein weiterer
+                    // Durchlauf angestossen (es folgt kein weiteres Event).
+                    if (files_remaining)
+                        {
+                        trigger();
+                        }
+                        
+                    // Files, die noch nicht stabil waren, werden nach Ablauf
+                    // des Stabilitaetsfensters erneut geprueft: Nach dem
+                    // letzten Schreibvorgang folgt kein weiteres Event mehr.
+                    else if (Processing_InputStability.has_unstable_files())
+                        {
+                        schedule_trigger(controller.properties.get_stability_window());
+                        }
+                    }
+                });
+            }
+        catch (RejectedExecutionException e)
+            {
+            // Der Executor Service wurde bei der Deaktivierung heruntergefahren.
+            this.run_pending.set(false);
+            }
+            
+        }
+        
+    }
@@ -16,13 +16,8 @@
 
 package ch.zh.transferclient.gui;
 
-import java.awt.Color;
-import java.awt.Component;
-
 import javax.swing.*;
-import javax.swing.table.*;
 
-import ch.zh.transferclient.main.*;
 import ch.zh.transferclient.properties.*;
 
 /**
@@ -54,9 +49,12 @@ public class FactoryTableProtocol_Detail
         
         {
         
-        DefaultTableModel model = get_model();
+        // Das Modell enthaelt hoechstens NUMBER_OF_TABLE_ENTRIES Uebertragungen
+        // (mit je einer Zeile pro Empfaenger); aeltere Zeilen werden verdraengt.
+        TableModelProtocol_Detail model = new TableModelProtocol_Detail(properties.get_number_of_table_entries()
+                * properties.get_sedex_recipient_ids().size());
         
-        JTable            table = new JTable(model);
+        JTable                    table = new JTable(model);
         
         table.setColumnSelectionAllowed(false);
         table.setRowSelectionAllowed(false);
@@ -71,54 +69,8 @@ public class FactoryTableProtocol_Detail
         table.setCellSelectionEnabled(false);
         
         // Setzen des ZellenRenderers
-        table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer()
-            {
-            
-            /** A unique serial version identifier. */
-            private static final long serialVersionUID = 1L;
-            
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column)
-                {
-                
-                final Component c                   = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                
-                int             number_of_receivers = properties.get_sedex_recipient_ids().size();
-                Integer         factor              = row / number_of_receivers;
-                if ((factor % 2) == 0)
-                    {
-                    // c.setBackground(Color.WHITE);
-                    c.setBackground(new Color(250, 250, 250)); // Ganz Helles Hellgrau
-                    }
-                else
-                    {
-                    // c.setBackground(Color.LIGHT_GRAY);
-                    c.setBackground(new Color(210, 210, 210)); // Helles Hellgrau
-                    }
-                    
-                if (table.getValueAt(row, 5).toString().contains("successfully"))
-                    {
-                    c.setForeground(Conf.GREEN);
-                    // c.setFont(c.getFont().deriveFont(java.awt.Font.BOLD));
-                    }
-                else
-                    {
-                    c.setForeground(Color.BLACK);
-                    // c.setFont(c.getFont().deriveFont(java.awt.Font.PLAIN));
-                    }
-                    
-                if (column == 0)
-                    {
-                    setHorizontalAlignment(SwingConstants.CENTER);
-                    }
-                else
-                    {
-                    setHorizontalAlignment(SwingConstants.LEFT);
-                    }
-                    
-                return c;
-                }
-            });
+        // (Baender mit je einer Zeile pro Empfaenger)
+        table.setDefaultRenderer(Object.class, new TableCellRendererProtocol(properties.get_sedex_recipient_ids().size()));
         
         table.setFocusable(false);
         table.setRowSelectionAllowed(false);
@@ -127,35 +79,4 @@ public class FactoryTableProtocol_Detail
         
         }
         
-    /**
-     * Produces the table model.
-     * 
-     * @return The table model.
-     */
-    private static DefaultTableModel get_model()
-        {
-        
-        DefaultTableModel model = new DefaultTableModel()
-            {
-            private static final long serialVersionUID = 1L;
-            
-            @Override
-            public boolean isCellEditable(int row, int column)
-                {
-                return false;
-                }
-                
-            };
-        
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_0"));
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_1"));
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_2"));
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_3"));
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_4"));
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_5"));
-        
-        return model;
-        
-        }
-        
     }
@@ -16,13 +16,8 @@
 
 package ch.zh.transferclient.gui;
 
-import java.awt.Color;
-import java.awt.Component;
-
 import javax.swing.*;
-import javax.swing.table.*;
 
-import ch.zh.transferclient.main.*;
 import ch.zh.transferclient.properties.*;
 
 /**
@@ -53,9 +48,11 @@ public class FactoryTableProtocol_Overview
         
         {
         
-        DefaultTableModel model = get_model();
+        // Das Modell enthaelt hoechstens NUMBER_OF_TABLE_ENTRIES Uebertragungen;
+        // aeltere Zeilen werden verdraengt.
+        TableModelProtocol_Overview model = new TableModelProtocol_Overview(properties.get_number_of_table_entries());
         
-        JTable            table = new JTable(model);
+        JTable                      table = new JTable(model);
         
         table.setColumnSelectionAllowed(false);
         table.setRowSelectionAllowed(false);
@@ -70,44 +67,7 @@ public class FactoryTableProtocol_Overview
         table.setCellSelectionEnabled(false);
         
         // Setzen des ZellenRenderers
-        table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer()
-            {
-            
-            /** A unique serial version identifier. */
-            private static final long serialVersionUID = 1L;
-            
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column)
-                {
-                
-                final Component c                    = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                
-                final Integer   NUMBER_OF_RECIPIENTS = properties.get_sedex_recipient_ids().size();
-                final String    KEY_TEXT             = NUMBER_OF_RECIPIENTS + " of " + NUMBER_OF_RECIPIENTS;
-                
-                if (table.getValueAt(row, 3).toString().contains(KEY_TEXT))
-                    {
-                    c.setForeground(Conf.GREEN);
-                    // c.setFont(c.getFont().deriveFont(java.awt.Font.BOLD));
-                    }
-                else
-                    {
-                    c.setForeground(Color.BLACK);
-                    // c.setFont(c.getFont().deriveFont(java.awt.Font.PLAIN));
-                    }
-                    
-                if (column == 0)
-                    {
-                    setHorizontalAlignment(SwingConstants.CENTER);
-                    }
-                else
-                    {
-                    setHorizontalAlignment(SwingConstants.LEFT);
-                    }
-                    
-                return c;
-                }
-            });
+        table.setDefaultRenderer(Object.class, new TableCellRendererProtocol(0));
         
         table.setFocusable(false);
         table.setRowSelectionAllowed(false);
@@ -116,33 +76,4 @@ public class FactoryTableProtocol_Overview
         
         }
         
-    /**
-     * Produces the table model.
-     * 
-     * @return The table model.
-     */
-    private static DefaultTableModel get_model()
-        {
-        
-        DefaultTableModel model = new DefaultTableModel()
-            {
-            private static final long serialVersionUID = 1L;
-            
-            @Override
-            public boolean isCellEditable(int row, int column)
-                {
-                return false;
-                }
-                
-            };
-        
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_0")); // Heure
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_1")); // Données diffusées
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_4")); // ID Message
-        model.addColumn(Labels.get("FACTORYTABLEPROTOCOL_COLUMN_5")); // Status
-        
-        return model;
-        
-        }
-        
     }
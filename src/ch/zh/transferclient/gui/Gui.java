@@ -21,7 +21,6 @@ import java.util.Locale;
 import java.awt.*;
 import javax.swing.*;
 import javax.swing.border.*;
-import javax.swing.table.DefaultTableModel;
 
 import ch.zh.transferclient.controller.*;
 import ch.zh.transferclient.main.*;
@@ -74,6 +73,8 @@ public class Gui extends JFrame
     // Steuerung
     /** The label which indicates the status of the transfer-client. */
     private final JLabel                 label_status;
+    /** The label which shows the progress of tasks running in the background (e.g. the archiving of old receipts). */
+    private final JLabel                 label_progress;
     /** The button which activates the transfer-client. */
     private final JButton                button_activation;
     /** The button which auto-activates the transfer-client. */
@@ -95,6 +96,12 @@ public class Gui extends JFrame
     /** The table which shows the protocol of the transfers. */
     private final JTable                 table_protocol_detail;
     
+    /** The state of the transfers shown in the protocol tables. */
+    private final TransferRegistry       transfer_registry = new TransferRegistry();
+    
+    /** The coalescer which applies the changes of the transfers to the protocol tables. */
+    private final TableModelProtocol_Coalescer protocol_coalescer;
+    
     // Dialoge
     
     // Zur Konstruktion der folgenden Dialoge ist eine Referenz auf das GUI-Objekt
@@ -154,6 +161,9 @@ public class Gui extends JFrame
     /** @return Table label status. */
     public JLabel get_label_status()                                     {return this.label_status;}
         
+    /** @return Label progress of background tasks. */
+    public JLabel get_label_progress()                                   {return this.label_progress;}
+        
     /** @return Activation button. */
     public JButton get_button_activation()                               {return this.button_activation;}
         
@@ -172,6 +182,18 @@ public class Gui extends JFrame
     /** @return Table Detail Protocol. */
     public JTable get_table_protocol_detail()                            {return this.table_protocol_detail;}
         
+    /** @return Table model of the Overview Protocol. */
+    public TableModelProtocol_Overview get_model_protocol_overview()     {return (TableModelProtocol_Overview) this.table_protocol_overview.getModel();}
+        
+    /** @return Table model of the Detail Protocol. */
+    public TableModelProtocol_Detail get_model_protocol_detail()         {return (TableModelProtocol_Detail) this.table_protocol_detail.getModel();}
+        
+    /** @return The state of the transfers shown in the protocol tables. */
+    public TransferRegistry get_transfer_registry()                      {return this.transfer_registry;}
+        
+    /** @return The coalescer which applies the changes of the transfers to the protocol tables. */
+    public TableModelProtocol_Coalescer get_protocol_coalescer()         {return this.protocol_coalescer;}
+        
     // Dialoge 
     /** @return Dialog dor directory. */
     public DialogDir get_dialog_dir()                                           {return this.dialog_dir;}
@@ -367,12 +389,20 @@ public class Gui extends JFrame
         JPanel panel_status = new JPanel(new FlowLayout(FlowLayout.CENTER, 1, 1));
         this.label_status = label_status;
         
+        // Fortschritt von Hintergrundaufgaben
+        JLabel label_progress = new JLabel("");
+        JPanel panel_progress = new JPanel(new FlowLayout(FlowLayout.CENTER, 1, 1));
+        label_progress.setFont(new Font("Sans Serif", Font.PLAIN, 12));
+        panel_progress.add(label_progress);
+        this.label_progress = label_progress;
+        
         // Steuerungsfeld
         JPanel steuerungsfeld = new JPanel();
         steuerungsfeld.setLayout(new BoxLayout(steuerungsfeld, BoxLayout.Y_AXIS));
         panel_status.add(label_status);
         steuerungsfeld.add(panel_status);
         steuerungsfeld.add(panel_buttons);
+        steuerungsfeld.add(panel_progress);
         
         TitledBorder tb_steuerungsfeld = new TitledBorder(Labels.get("GUI_TITLEDBORDER_CONTROL"));
         tb_steuerungsfeld.setBorder(GREYLINE);
@@ -388,8 +418,6 @@ public class Gui extends JFrame
         // Protocol Overview
         // ------------------
         JTable            table_protocol_overview = FactoryTableProtocol_Overview.get_table(properties);
-        DefaultTableModel model_overview          = (DefaultTableModel) table_protocol_overview.getModel();
-        model_overview.getDataVector().removeAllElements();
         table_protocol_overview.setVisible(true);
         JScrollPane scroll_table_protocol_overview = new JScrollPane(table_protocol_overview, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         this.table_protocol_overview = table_protocol_overview;
@@ -398,12 +426,14 @@ public class Gui extends JFrame
         // Protocol Details
         // -----------------
         JTable            table_protocol_detail = FactoryTableProtocol_Detail.get_table(properties);
-        DefaultTableModel model                 = (DefaultTableModel) table_protocol_detail.getModel();
-        model.getDataVector().removeAllElements();
         table_protocol_detail.setVisible(true);
         JScrollPane scroll_table_protocol = new JScrollPane(table_protocol_detail, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         this.table_protocol_detail = table_protocol_detail;
         
+        // Die Aenderungen der Uebertragungen werden gesammelt und
+        // periodisch auf die Protokoll-Tabellen angewendet.
+        this.protocol_coalescer = new TableModelProtocol_Coalescer(this.transfer_registry, this.get_model_protocol_overview(), this.get_model_protocol_detail());
+        
         // -----------------
         // Protocols Border
         // -----------------
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import java.awt.Color;
+import java.awt.Component;
+
+import javax.swing.*;
+import javax.swing.table.*;
+
+import ch.zh.transferclient.main.*;
+
+/**
+ * This class is used to render the cells of the protocol tables.
+ *
+ * The renderer does not allocate any objects while painting: The colours are constants, the number of rows per band is
+ * fixed when the renderer is constructed, and the status of a row is taken from the status flag of the table model
+ * (instead of searching the displayed text).
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class TableCellRendererProtocol extends DefaultTableCellRenderer
+    
+    {
+    
+    /** A unique serial version identifier. */
+    private static final long  serialVersionUID = 1L;
+    
+    /** Background of the even bands. */
+    private static final Color BAND_EVEN        = new Color(250, 250, 250); // Ganz Helles Hellgrau
+    
+    /** Background of the odd bands. */
+    private static final Color BAND_ODD         = new Color(210, 210, 210); // Helles Hellgrau
+    
+    /** Number of consecutive rows with the same background (0: no bands). */
+    private final int          rows_per_band;
+    
+    /**
+     * Constructs a TableCellRendererProtocol object.
+     * 
+     * @param rows_per_band Number of consecutive rows with the same background (0: no bands).
+     */
+    protected TableCellRendererProtocol(final int rows_per_band)
+        {
+        this.rows_per_band = rows_per_band;
+        }
+        
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column)
+        {
+        
+        final Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+        
+        // Im Detail-Protokoll werden die Zeilen einer Uebertragung (eine Zeile
+        // pro Empfaenger) abwechselnd hell und dunkel hinterlegt.
+        if (this.rows_per_band > 0)
+            {
+            c.setBackground(((row / this.rows_per_band) % 2 == 0) ? BAND_EVEN : BAND_ODD);
+            }
+            
+        c.setForeground(((TableModelProtocol<?>) table.getModel()).is_successful(row) ? Conf.GREEN : Color.BLACK);
+        
+        setHorizontalAlignment((column == 0) ? SwingConstants.CENTER : SwingConstants.LEFT);
+        
+        return c;
+        
+        }
+        
+    }
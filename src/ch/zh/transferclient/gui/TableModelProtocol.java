@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * This class is used as the table model of a protocol table.
+ *
+ * The rows are entries of the TransferRegistry; the cells are rendered from their typed fields. The rows are kept in a
+ * ring buffer with a fixed capacity (newest first): A new row is inserted at the top by overwriting the oldest row if the
+ * capacity is reached, so that neither the insertion nor the eviction has to shift the other rows. Every row receives a
+ * sequence number when it is inserted, and its current index is derived from the number of rows inserted since then,
+ * so that the row of a changed entry can be found (and repainted) in constant time. The model must only be used by the
+ * EDT thread.
+ *
+ * @author    Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version   2.4
+ * @param <T> The type of the rows.
+ */
+public abstract class TableModelProtocol<T> extends AbstractTableModel
+    
+    {
+    
+    /** A unique serial version identifier. */
+    private static final long      serialVersionUID = 1L;
+    
+    /** The column names. */
+    private final String[]         column_names;
+    
+    /** The ring buffer containing the rows. */
+    private final Object[]         buffer;
+    
+    /** Index of the buffer element which receives the next row (the newest row is at the index before). */
+    private int                    next             = 0;
+    
+    /** Number of rows in the buffer. */
+    private int                    count            = 0;
+    
+    /** Sequence number of every row. */
+    private final HashMap<T, Long> sequences        = new HashMap<T, Long>();
+    
+    /** Number of rows inserted so far. */
+    private long                   inserted         = 0;
+    
+    /**
+     * Constructs a TableModelProtocol object.
+     *
+     * @param capacity     The maximum number of rows (older rows are evicted).
+     * @param column_names The column names.
+     */
+    protected TableModelProtocol(final int capacity, final String... column_names)
+        {
+        this.buffer       = new Object[Math.max(1, capacity)];
+        this.column_names = column_names;
+        }
+        
+    /**
+     * Returns the value of a cell.
+     *
+     * @param  row    The row.
+     * @param  column The column.
+     * @return        The value of the cell.
+     */
+    protected abstract Object get_value(T row, int column);
+    
+    /**
+     * Returns the status flag of an entry (used by the renderer to colour the row).
+     *
+     * @param  row The entry.
+     * @return     True if the transfer of the entry has been completed successfully.
+     */
+    protected abstract boolean is_successful(T row);
+    
+    /**
+     * Returns the status flag of a row (used by the renderer to colour the row).
+     *
+     * @param  row The row (0 is the newest row).
+     * @return     True if the transfer shown in the row has been completed successfully.
+     */
+    public boolean is_successful(final int row)
+        {
+        return this.is_successful(this.get_row(row));
+        }
+        
+    /**
+     * Returns the entry shown in a row.
+     *
+     * @param  row The row (0 is the newest row).
+     * @return     The entry.
+     */
+    @SuppressWarnings("unchecked")
+    public T get_row(final int row)
+        {
+        if ((row < 0) || (row >= this.count))
+            {
+            throw new IndexOutOfBoundsException("row " + row + ", count " + this.count);
+            }
+        return (T) this.buffer[(this.next - 1 - row + this.buffer.length) % this.buffer.length];
+        }
+        
+    /**
+     * Inserts rows at the top of the table (the last entry ends up in the top row). If the capacity is reached, the
+     * oldest rows are evicted.
+     *
+     * @param  entries The entries to be shown (in the order of insertion).
+     * @return         The evicted entries.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> insert_at_top(final List<T> entries)
+        {
+        
+        final ArrayList<T> evicted = new ArrayList<T>();
+        if (entries.isEmpty())
+            {
+            return evicted;
+            }
+            
+        final int count_old = this.count;
+        for (T entry : entries)
+            {
+            // Bei voller Kapazitaet liegt an der Einfuegeposition die
+            // aelteste Zeile, die damit ueberschrieben wird.
+            if (this.count == this.buffer.length)
+                {
+                final T oldest = (T) this.buffer[this.next];
+                this.sequences.remove(oldest);
+                evicted.add(oldest);
+                }
+            else
+                {
+                this.count++;
+                }
+            this.buffer[this.next] = entry;
+            this.next              = (this.next + 1) % this.buffer.length;
+            this.sequences.put(entry, this.inserted);
+            this.inserted++;
+            }
+            
+        // Je ein Event fuer die unten entfernten und die oben eingefuegten
+        // Zeilen (bzw. ein einziges Event, wenn alle Zeilen ersetzt worden sind).
+        final int evicted_old = Math.min(evicted.size(), count_old);
+        if ((evicted_old == count_old) && (count_old > 0))
+            {
+            this.fireTableDataChanged();
+            }
+        else
+            {
+            if (evicted_old > 0)
+                {
+                this.fireTableRowsDeleted(count_old - evicted_old, count_old - 1);
+                }
+            this.fireTableRowsInserted(0, Math.min(entries.size(), this.count) - 1);
+            }
+            
+        return evicted;
+        
+        }
+        
+    /**
+     * Repaints the rows of entries whose state has changed (entries which are not or no longer shown are ignored).
+     *
+     * @param entries The entries.
+     */
+    public void rows_changed(final Collection<T> entries)
+        {
+        int first = Integer.MAX_VALUE;
+        int last  = -1;
+        for (T entry : entries)
+            {
+            final int row = this.row_of(entry);
+            if (row >= 0)
+                {
+                first = Math.min(first, row);
+                last  = Math.max(last, row);
+                }
+            }
+            
+        // Ein einziges Event fuer den Bereich der geaenderten Zeilen
+        if (last >= 0)
+            {
+            this.fireTableRowsUpdated(first, last);
+            }
+        }
+        
+    /**
+     * Returns the row of an entry.
+     *
+     * @param  entry The entry.
+     * @return       The row of the entry, -1 if the entry is not (or no longer) shown.
+     */
+    public int row_of(final T entry)
+        {
+        final Long sequence = this.sequences.get(entry);
+        if (sequence == null)
+            {
+            return -1;
+            }
+        return (int) (this.inserted - 1 - sequence);
+        }
+        
+    @Override
+    public int getRowCount()
+        {
+        return this.count;
+        }
+        
+    @Override
+    public int getColumnCount()
+        {
+        return this.column_names.length;
+        }
+        
+    @Override
+    public String getColumnName(final int column)
+        {
+        return this.column_names[column];
+        }
+        
+    @Override
+    public Object getValueAt(final int row, final int column)
+        {
+        return this.get_value(this.get_row(row), column);
+        }
+        
+    @Override
+    public boolean isCellEditable(final int row, final int column)
+        {
+        return false;
+        }
+        
+    }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.swing.Timer;
+
+import ch.zh.transferclient.util.ThreadAnalyzer;
+
+/**
+ * This class is used to apply the changes of the TransferRegistry to the protocol tables in batches.
+ *
+ * The worker threads (input and receipts processing) publish immutable events into a queue and continue without
+ * waiting for the EDT thread. A Swing timer drains the queue periodically and applies all pending events with one
+ * insert, one delete and one update event per table. The events are applied in the order of their publication (FIFO),
+ * so the rows appear in the same order as before. The assignment of the receipts does not depend on the tables, because
+ * the receipts are applied to the TransferRegistry, in which a transfer is registered before its files are placed into
+ * the sedex outbox.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class TableModelProtocol_Coalescer
+    
+    {
+    
+    /** Interval in milliseconds in which the pending events are applied. */
+    private static final int                   INTERVAL = 100;
+    
+    /** The pending events (in the order of publication). */
+    private final ConcurrentLinkedQueue<Event> events   = new ConcurrentLinkedQueue<Event>();
+    
+    /** The state of the transfers. */
+    private final TransferRegistry             registry;
+    
+    /** The table model of the overview protocol. */
+    private final TableModelProtocol_Overview  model_overview;
+    
+    /** The table model of the detail protocol. */
+    private final TableModelProtocol_Detail    model_detail;
+    
+    /**
+     * Constructs a TableModelProtocol_Coalescer object and starts its timer.
+     *
+     * @param registry       The state of the transfers.
+     * @param model_overview The table model of the overview protocol.
+     * @param model_detail   The table model of the detail protocol.
+     */
+    protected TableModelProtocol_Coalescer(final TransferRegistry registry, final TableModelProtocol_Overview model_overview, final TableModelProtocol_Detail model_detail)
+        {
+        this.registry       = registry;
+        this.model_overview = model_overview;
+        this.model_detail   = model_detail;
+        
+        final Timer timer = new Timer(INTERVAL, new ActionListener()
+            {
+            @Override
+            public void actionPerformed(ActionEvent e)
+                {
+                apply();
+                }
+            });
+        timer.start();
+        }
+        
+    /**
+     * Publishes a newly registered message (may be called by any thread).
+     *
+     * @param message The message.
+     */
+    public void publish_inserted(final TransferRegistry_Message message)
+        {
+        this.events.add(new Event(message, null));
+        }
+        
+    /**
+     * Publishes a recipient entry whose state has changed (may be called by any thread).
+     *
+     * @param recipient The recipient entry.
+     */
+    public void publish_changed(final TransferRegistry_Recipient recipient)
+        {
+        this.events.add(new Event(null, recipient));
+        }
+        
+    /**
+     * Applies the pending events to the table models (EDT thread).
+     */
+    private void apply()
+        {
+        
+        if (this.events.isEmpty())
+            {
+            return;
+            }
+            
+        ThreadAnalyzer.println(Thread.currentThread(), "EventDispatchThread", "Coalescer", "Aktualisierung der Protokolle");
+        
+        final ArrayList<TransferRegistry_Message>       inserted_messages   = new ArrayList<TransferRegistry_Message>();
+        final ArrayList<TransferRegistry_Recipient>     inserted_recipients = new ArrayList<TransferRegistry_Recipient>();
+        final LinkedHashSet<TransferRegistry_Message>   changed_messages    = new LinkedHashSet<TransferRegistry_Message>();
+        final LinkedHashSet<TransferRegistry_Recipient> changed_recipients  = new LinkedHashSet<TransferRegistry_Recipient>();
+        
+        // Abarbeitung in der Reihenfolge der Publikation
+        Event event;
+        while ((event = this.events.poll()) != null)
+            {
+            if (event.message != null)
+                {
+                inserted_messages.add(event.message);
+                
+                // Im Detail-Protokoll steht der erste Empfaenger zuoberst:
+                // Die Empfaenger werden deshalb von hinten eingefuegt.
+                for (int j = event.message.get_recipients().size() - 1; j >= 0; j--)
+                    {
+                    inserted_recipients.add(event.message.get_recipients().get(j));
+                    }
+                }
+            else
+                {
+                changed_recipients.add(event.recipient);
+                changed_messages.add(event.recipient.get_message());
+                }
+            }
+            
+        // Neue Zeilen (je ein Event pro Tabelle). Die Modelle haben eine feste
+        // Kapazitaet: Die aeltesten Zeilen werden dabei verdraengt, und die
+        // Uebertragungen, die nicht mehr angezeigt werden, werden auch aus dem
+        // Register entfernt.
+        this.model_detail.insert_at_top(inserted_recipients);
+        for (TransferRegistry_Message evicted : this.model_overview.insert_at_top(inserted_messages))
+            {
+            this.registry.remove(evicted);
+            }
+            
+        // Geaenderte Zeilen (je ein Event pro Tabelle). Da die Modelle den
+        // Zustand direkt aus dem Register lesen, zeigen auch die eben erst
+        // eingefuegten Zeilen bereits den aktuellen Zustand.
+        this.model_detail.rows_changed(changed_recipients);
+        this.model_overview.rows_changed(changed_messages);
+        
+        }
+        
+    /**
+     * An immutable change event.
+     */
+    private static final class Event
+        
+        {
+        
+        /** The newly registered message (null for a changed recipient entry). */
+        private final TransferRegistry_Message   message;
+        
+        /** The changed recipient entry (null for a newly registered message). */
+        private final TransferRegistry_Recipient recipient;
+        
+        /**
+         * Constructs an Event object.
+         *
+         * @param message   The newly registered message (null for a changed recipient entry).
+         * @param recipient The changed recipient entry (null for a newly registered message).
+         */
+        private Event(final TransferRegistry_Message message, final TransferRegistry_Recipient recipient)
+            {
+            this.message   = message;
+            this.recipient = recipient;
+            }
+            
+        }
+        
+    }
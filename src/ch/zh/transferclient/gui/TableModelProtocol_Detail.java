@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import ch.zh.transferclient.main.*;
+
+/**
+ * This class is used as the table model of the detail protocol (one row per message and recipient).
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class TableModelProtocol_Detail extends TableModelProtocol<TransferRegistry_Recipient>
+    
+    {
+    
+    /** A unique serial version identifier. */
+    private static final long   serialVersionUID = 1L;
+    
+    /** Status shown as long as no receipt has arrived. */
+    private static final String STATUS_WAITING   = "Waiting for receipt ...";
+    
+    /** Status shown if the transfer has been discarded before any recipient has been served. */
+    private static final String STATUS_DISCARDED = "Not sent (transfer discarded)";
+    
+    /**
+     * Constructs a TableModelProtocol_Detail object.
+     *
+     * @param capacity The maximum number of rows (NUMBER_OF_TABLE_ENTRIES times the number of recipients).
+     */
+    protected TableModelProtocol_Detail(final int capacity)
+        {
+        super(capacity,
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_0"), // Zeit
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_1"), // File
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_2"), // Empfaenger
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_3"), // Sedex-ID des Empfaengers
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_4"), // Message-ID
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_5")); // Status
+        }
+        
+    @Override
+    protected boolean is_successful(final TransferRegistry_Recipient recipient)
+        {
+        return recipient.is_successful();
+        }
+        
+    @Override
+    protected Object get_value(final TransferRegistry_Recipient recipient, final int column)
+        {
+        switch (column)
+            {
+            case 0:
+                return recipient.get_message().get_time();
+            case 1:
+                return recipient.get_message().get_file_name();
+            case 2:
+                return recipient.get_sedex_recipient_label();
+            case 3:
+                return recipient.get_sedex_recipient_id();
+            case 4:
+                return recipient.get_sedex_message_id();
+            default:
+                final String status_info = recipient.get_status_info();
+                if (status_info != null)
+                    {
+                    return status_info;
+                    }
+                return recipient.get_message().is_discarded() ? STATUS_DISCARDED : STATUS_WAITING;
+            }
+        }
+        
+    }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import ch.zh.transferclient.main.*;
+
+/**
+ * This class is used as the table model of the overview protocol (one row per message).
+ *
+ * The status is rendered from the success counter of the message (e.g. "2 of 3 messages successfully transmitted").
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class TableModelProtocol_Overview extends TableModelProtocol<TransferRegistry_Message>
+    
+    {
+    
+    /** A unique serial version identifier. */
+    private static final long   serialVersionUID  = 1L;
+    
+    /** Status shown as long as no successful receipt has arrived. */
+    private static final String STATUS_WAITING    = "Waiting for receipts ...";
+    
+    /** Status shown if the transfer has been discarded before any recipient has been served. */
+    private static final String STATUS_DISCARDED  = "Not sent (transfer discarded)";
+    
+    /** The status texts per number of successes (for the number of recipients in status_recipients). */
+    private String[]            status_texts      = new String[0];
+    
+    /** The number of recipients for which the status texts have been prepared. */
+    private int                 status_recipients = -1;
+    
+    /**
+     * Constructs a TableModelProtocol_Overview object.
+     *
+     * @param capacity The maximum number of rows (NUMBER_OF_TABLE_ENTRIES).
+     */
+    protected TableModelProtocol_Overview(final int capacity)
+        {
+        super(capacity,
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_0"), // Heure
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_1"), // Données diffusées
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_4"), // ID Message
+                Labels.get("FACTORYTABLEPROTOCOL_COLUMN_5")); // Status
+        }
+        
+    @Override
+    protected boolean is_successful(final TransferRegistry_Message message)
+        {
+        return message.is_complete();
+        }
+        
+    @Override
+    protected Object get_value(final TransferRegistry_Message message, final int column)
+        {
+        switch (column)
+            {
+            case 0:
+                return message.get_time();
+            case 1:
+                return message.get_file_name();
+            case 2:
+                return message.get_sedex_message_id();
+            default:
+                if (message.is_discarded())
+                    {
+                    return STATUS_DISCARDED;
+                    }
+                return this.status_text(message.get_successes(), message.get_recipients().size());
+            }
+        }
+        
+    /**
+     * Returns the status text of a message. The texts are prepared once per number of recipients, so that painting
+     * the table does not produce new strings.
+     *
+     * @param  successes  Number of recipients which have confirmed the transmission successfully.
+     * @param  recipients Number of recipients.
+     * @return            The status text (e.g. "2 of 3 messages successfully transmitted").
+     */
+    private String status_text(final int successes, final int recipients)
+        {
+        
+        if (successes == 0)
+            {
+            return STATUS_WAITING;
+            }
+            
+        if (recipients != this.status_recipients)
+            {
+            final String appendix = (recipients < 2) ? " message successfully transmitted" : " messages successfully transmitted";
+            this.status_texts = new String[recipients + 1];
+            for (int i = 0; i <= recipients; i++)
+                {
+                this.status_texts[i] = i + " of " + recipients + appendix;
+                }
+            this.status_recipients = recipients;
+            }
+            
+        return this.status_texts[Math.min(successes, recipients)];
+        
+        }
+        
+    }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is used to keep the state of the transfers shown in the protocol tables.
+ *
+ * Every input file is registered as a message with one recipient entry per sedex recipient. The protocol tables only
+ * render these entries (cf. TableModelProtocol), so the state does not have to be read back from the table cells. A
+ * receipt is matched to its entries by a hash lookup of the sedex message id (with and without the recipient suffix),
+ * and the row of a changed entry is found by its insertion sequence (cf. TableModelProtocol), so that neither requires a
+ * pass over the table rows. The registry may be used by any thread; the table models must only be changed by the EDT
+ * thread.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class TransferRegistry
+    
+    {
+    
+    /** The messages (key: sedex message id). */
+    private final ConcurrentHashMap<String, TransferRegistry_Message>   messages   = new ConcurrentHashMap<String, TransferRegistry_Message>();
+    
+    /** The recipient entries (key: sedex message id incl. recipient suffix, e.g. "-E0"). */
+    private final ConcurrentHashMap<String, TransferRegistry_Recipient> recipients = new ConcurrentHashMap<String, TransferRegistry_Recipient>();
+    
+    /**
+     * Registers a message.
+     *
+     * @param  time                   The time shown in the protocol (hh:mm).
+     * @param  file_name              The name of the input file.
+     * @param  sedex_message_id       The sedex message id.
+     * @param  sedex_recipient_ids    The sedex recipient ids.
+     * @param  sedex_recipient_labels The labels of the sedex recipients.
+     * @return                        The registered message.
+     */
+    public TransferRegistry_Message register
+    /* @formatter:off */
+        (
+        final String            time,
+        final String            file_name,
+        final String            sedex_message_id,
+        final ArrayList<String> sedex_recipient_ids,
+        final ArrayList<String> sedex_recipient_labels
+        )
+    /* @formatter:on */
+        {
+        
+        final TransferRegistry_Message message = new TransferRegistry_Message(time, file_name, sedex_message_id, sedex_recipient_ids, sedex_recipient_labels);
+        
+        // Zuerst die Empfaenger, damit eine Quittung nie eine Meldung
+        // ohne ihre Empfaenger antrifft.
+        for (TransferRegistry_Recipient recipient : message.get_recipients())
+            {
+            this.recipients.put(recipient.get_sedex_message_id(), recipient);
+            }
+        this.messages.put(sedex_message_id, message);
+        
+        return message;
+        
+        }
+        
+    /**
+     * Returns a message.
+     *
+     * @param  sedex_message_id The sedex message id.
+     * @return                  The message, null if the message is not (or no longer) registered.
+     */
+    public TransferRegistry_Message get_message(final String sedex_message_id)
+        {
+        return this.messages.get(sedex_message_id);
+        }
+        
+    /**
+     * Returns a recipient entry.
+     *
+     * @param  sedex_message_id The sedex message id incl. recipient suffix (e.g. "-E0").
+     * @return                  The recipient entry, null if the message is not (or no longer) registered.
+     */
+    public TransferRegistry_Recipient get_recipient(final String sedex_message_id)
+        {
+        return this.recipients.get(sedex_message_id);
+        }
+        
+    /**
+     * Discards a message whose transfer has failed before any recipient has been served: the message is marked as
+     * discarded (the protocol keeps showing it) and removed from the register, since no receipt can arrive for it.
+     *
+     * @param  sedex_message_id The sedex message id.
+     * @return                  The discarded message, null if the message is not (or no longer) registered.
+     */
+    public TransferRegistry_Message discard(final String sedex_message_id)
+        {
+        final TransferRegistry_Message message = this.messages.get(sedex_message_id);
+        if (message != null)
+            {
+            message.discard();
+            this.remove(message);
+            }
+        return message;
+        }
+        
+    /**
+     * Removes a message and its recipient entries (e.g. after the message has been removed from the protocol).
+     *
+     * @param message The message.
+     */
+    public void remove(final TransferRegistry_Message message)
+        {
+        this.messages.remove(message.get_sedex_message_id());
+        for (TransferRegistry_Recipient recipient : message.get_recipients())
+            {
+            this.recipients.remove(recipient.get_sedex_message_id());
+            }
+        }
+        
+    }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is used to keep the state of a message (i.e. of an input file sent to all recipients).
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class TransferRegistry_Message
+    
+    {
+    
+    /** The time shown in the protocol (hh:mm). */
+    private final String                           time;
+    
+    /** The name of the input file. */
+    private final String                           file_name;
+    
+    /** The sedex message id. */
+    private final String                           sedex_message_id;
+    
+    /** The recipient entries (in the order of the recipients in the properties file). */
+    private final List<TransferRegistry_Recipient> recipients;
+    
+    /** Number of recipients which have confirmed the transmission successfully. */
+    private final AtomicInteger                    successes = new AtomicInteger(0);
+    
+    /** Indicator which indicates whether the transfer has been discarded before any recipient has been served. */
+    private volatile boolean                       discarded = false;
+    
+    /**
+     * Constructs a TransferRegistry_Message object.
+     *
+     * @param time                   The time shown in the protocol (hh:mm).
+     * @param file_name              The name of the input file.
+     * @param sedex_message_id       The sedex message id.
+     * @param sedex_recipient_ids    The sedex recipient ids.
+     * @param sedex_recipient_labels The labels of the sedex recipients.
+     */
+    protected TransferRegistry_Message
+    /* @formatter:off */
+        (
+        final String            time,
+        final String            file_name,
+        final String            sedex_message_id,
+        final ArrayList<String> sedex_recipient_ids,
+        final ArrayList<String> sedex_recipient_labels
+        )
+    /* @formatter:on */
+        {
+        this.time             = time;
+        this.file_name        = file_name;
+        this.sedex_message_id = sedex_message_id;
+        
+        final ArrayList<TransferRegistry_Recipient> recipients = new ArrayList<TransferRegistry_Recipient>(sedex_recipient_ids.size());
+        for (int j = 0; j < sedex_recipient_ids.size(); j++)
+            {
+            recipients.add(new TransferRegistry_Recipient(this, sedex_recipient_labels.get(j), sedex_recipient_ids.get(j),
+                    sedex_message_id + "-E" + j));
+            }
+        this.recipients = Collections.unmodifiableList(recipients);
+        }
+        
+    /**
+     * @return The time shown in the protocol (hh:mm).
+     */
+    public String get_time()
+        {
+        return this.time;
+        }
+        
+    /**
+     * @return The name of the input file.
+     */
+    public String get_file_name()
+        {
+        return this.file_name;
+        }
+        
+    /**
+     * @return The sedex message id.
+     */
+    public String get_sedex_message_id()
+        {
+        return this.sedex_message_id;
+        }
+        
+    /**
+     * @return The recipient entries (in the order of the recipients in the properties file).
+     */
+    public List<TransferRegistry_Recipient> get_recipients()
+        {
+        return this.recipients;
+        }
+        
+    /**
+     * @return Number of recipients which have confirmed the transmission successfully.
+     */
+    public int get_successes()
+        {
+        return this.successes.get();
+        }
+        
+    /**
+     * @return True if all recipients have confirmed the transmission successfully.
+     */
+    public boolean is_complete()
+        {
+        return this.successes.get() >= this.recipients.size();
+        }
+        
+    /**
+     * @return True if the transfer has been discarded (the input file is processed again under a new message id).
+     */
+    public boolean is_discarded()
+        {
+        return this.discarded;
+        }
+        
+    /**
+     * Marks the transfer as discarded (cf. TransferRegistry.discard).
+     */
+    protected void discard()
+        {
+        this.discarded = true;
+        }
+        
+    /**
+     * Counts a successful transmission (called once per recipient).
+     */
+    protected void count_success()
+        {
+        this.successes.incrementAndGet();
+        }
+        
+    }
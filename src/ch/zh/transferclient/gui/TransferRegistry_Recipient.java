@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.gui;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class is used to keep the state of a message for a single recipient.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class TransferRegistry_Recipient
+    
+    {
+    
+    /** The message to which the entry belongs. */
+    private final TransferRegistry_Message message;
+    
+    /** The label of the sedex recipient. */
+    private final String                   sedex_recipient_label;
+    
+    /** The sedex recipient id. */
+    private final String                   sedex_recipient_id;
+    
+    /** The sedex message id incl. recipient suffix (e.g. "-E0"). */
+    private final String                   sedex_message_id;
+    
+    /** The status info of the last receipt (null as long as no receipt has arrived). */
+    private volatile String                status_info;
+    
+    /** Indicator which indicates whether the transmission has been confirmed successfully. */
+    private final AtomicBoolean            successful = new AtomicBoolean(false);
+    
+    /**
+     * Constructs a TransferRegistry_Recipient object.
+     *
+     * @param message               The message to which the entry belongs.
+     * @param sedex_recipient_label The label of the sedex recipient.
+     * @param sedex_recipient_id    The sedex recipient id.
+     * @param sedex_message_id      The sedex message id incl. recipient suffix (e.g. "-E0").
+     */
+    protected TransferRegistry_Recipient(final TransferRegistry_Message message, final String sedex_recipient_label, final String sedex_recipient_id, final String sedex_message_id)
+        {
+        this.message               = message;
+        this.sedex_recipient_label = sedex_recipient_label;
+        this.sedex_recipient_id    = sedex_recipient_id;
+        this.sedex_message_id      = sedex_message_id;
+        }
+        
+    /**
+     * @return The message to which the entry belongs.
+     */
+    public TransferRegistry_Message get_message()
+        {
+        return this.message;
+        }
+        
+    /**
+     * @return The label of the sedex recipient.
+     */
+    public String get_sedex_recipient_label()
+        {
+        return this.sedex_recipient_label;
+        }
+        
+    /**
+     * @return The sedex recipient id.
+     */
+    public String get_sedex_recipient_id()
+        {
+        return this.sedex_recipient_id;
+        }
+        
+    /**
+     * @return The sedex message id incl. recipient suffix (e.g. "-E0").
+     */
+    public String get_sedex_message_id()
+        {
+        return this.sedex_message_id;
+        }
+        
+    /**
+     * @return The status info of the last receipt (null as long as no receipt has arrived).
+     */
+    public String get_status_info()
+        {
+        return this.status_info;
+        }
+        
+    /**
+     * @return True if the transmission has been confirmed successfully.
+     */
+    public boolean is_successful()
+        {
+        return this.successful.get();
+        }
+        
+    /**
+     * Applies a receipt.
+     *
+     * @param status_info The status info of the receipt.
+     * @param successful  Indicator which indicates whether the receipt confirms a successful transmission.
+     */
+    public void apply_receipt(final String status_info, final boolean successful)
+        {
+        
+        this.status_info = status_info;
+        
+        // Der Zaehler der Meldung wird pro Empfaenger nur einmal erhoeht,
+        // auch wenn der Sedex-Client fuer einen Empfaenger mehr als eine
+        // Successful-Quittung senden wuerde.
+        if (successful && this.successful.compareAndSet(false, true))
+            {
+            this.message.count_success();
+            }
+            
+        }
+        
+    }
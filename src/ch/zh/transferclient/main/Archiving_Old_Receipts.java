@@ -16,19 +16,38 @@
 
 package ch.zh.transferclient.main;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.File;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.swing.JLabel;
 import javax.swing.SwingUtilities;
-
-import static java.nio.file.StandardCopyOption.*;
+import javax.swing.Timer;
 
 import ch.zh.transferclient.gui.*;
+import ch.zh.transferclient.processing.Processing_Journal;
+import ch.zh.transferclient.processing.Processing_Recovery;
 import ch.zh.transferclient.properties.*;
+import ch.zh.transferclient.util.FileTransfer;
 
 
 /**
- * This class is used to delete old receipts.
+ * This class is used to archive the old receipts (and the files left in the stage folder).
+ *
+ * The old receipts are moved by a pool of background threads, so that the startup does not have to wait for them (the
+ * GUI can be used while the archiving continues). The progress is shown by a Swing timer every UPDATE_INTERVAL
+ * milliseconds instead of once per receipt: in the status field of the splash screen and, once the GUI has been started
+ * and the splash screen has been hidden, in the progress label of the GUI (cf. release_splash). The regular processing
+ * of the receipts skips the old receipts (cf. is_old_receipt), so that it does not compete with the pool after an early
+ * activation.
  *
  * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
  * @version 2.4
@@ -37,6 +56,27 @@ public class Archiving_Old_Receipts
     
     {
     
+    /** Number of threads which move the old receipts. */
+    private static final int                THREADS         = 4;
+    
+    /** Interval in milliseconds in which the progress is updated. */
+    private static final int                UPDATE_INTERVAL = 250;
+    
+    /** The pool of threads which move the old receipts (null if there have been no old receipts). */
+    private static volatile ExecutorService pool;
+    
+    /** Indicator which indicates whether the archiving has been stopped (cf. shutdown). */
+    private static volatile boolean         stopped         = false;
+    
+    /** The names of the old receipts which have not yet been archived. */
+    private static final Set<String>        remaining       = ConcurrentHashMap.newKeySet();
+    
+    /** Indicator which indicates whether all old receipts have been archived (accessed by the EDT only). */
+    private static boolean                  finished        = false;
+    
+    /** The label of the GUI which shows the progress after the splash screen has been hidden (EDT only). */
+    private static JLabel                   label_progress;
+    
     /**
      * Constructs a Archiving_Old_Receipts object.
      */
@@ -44,9 +84,10 @@ public class Archiving_Old_Receipts
         {
       //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
         }
-    
+        
     /**
-     * Deletes all files within the sedex receipts folder.
+     * Moves the files left in the stage folder to the archive and starts the archiving of the files within the sedex
+     * receipts folder (the method returns before the receipts have been archived).
      *
      * @param  properties Properties to be used.
      * @param  guistart   The guistart object to be used.
@@ -55,6 +96,44 @@ public class Archiving_Old_Receipts
     protected static void execute(Properties properties,GuiStart guistart) throws Exception
         {
         
+        //Nachfolgend werden Files ins Archiv verschoben, 
+        //die aufgrund von ausserordentlichen Unterbruechen 
+        //im Stage-Folder zurueckgeblieben sind.
+        File dir_stage = new File("stage/");
+        final File[] files_stage = dir_stage.listFiles();
+        
+        for (int i = 0; i < files_stage.length; i++)
+            {
+            
+            // Files von unterbrochenen Uebertragungen, die gemaess Journal
+            // fortgesetzt werden koennen, bleiben im Stage-Folder (vgl.
+            // Processing_Recovery).
+            if (Processing_Recovery.is_reserved(files_stage[i].getName()))
+                {
+                Logger.info("STAGED FILE KEPT FOR RECOVERY: " + files_stage[i].getName());
+                continue;
+                }
+                
+            FileTransfer.move(files_stage[i].toPath(), new File("archive/stage/"
+                    + files_stage[i].getName()).toPath());
+                    
+            Logger.info("UNPROCESSED FILE MOVED FROM stage TO archive/stage: " + files_stage[i].getName());
+            
+            }
+            
+        archive_receipts(properties, guistart);
+        
+        }
+        
+    /**
+     * Starts the archiving of the files within the sedex receipts folder on a pool of background threads.
+     *
+     * @param properties Properties to be used.
+     * @param guistart   The guistart object to be used.
+     */
+    private static void archive_receipts(Properties properties, GuiStart guistart)
+        {
+        
         String       sedex_dir_receipts = properties.get_sedex_dir_receipts();
         
         final File   dir                = new File(sedex_dir_receipts);
@@ -63,90 +142,196 @@ public class Archiving_Old_Receipts
         
         if (files.length==0)
             {
-            SwingUtilities.invokeAndWait(new Runnable()
+            SwingUtilities.invokeLater(new Runnable()
                 {
                 @Override
                 public void run()
                     {
-                    try
-                        {
-                        String update_text = "0 of 0 old receipts archived.";
-                        guistart.update_statusfield(GuiStart.StatusField.STATUSFIELD1,update_text);
-                        }
-                    catch(Exception e)
-                        {
-                        // Hier koennte hoechstens eine null pointer exception geworfen werden,
-                        // wenn das guistart-Objekt noch nicht durch den EDT-Thread fertig 
-                        // konstruiert ist (vgl. main-Methode). Durch Verwendung von invokeAndWait 
-                        // in der main-Methode ist jedoch sichergestellt, dass das 
-                        // guistart-Objekt bereits durch den EDT-Thread erstellt worden ist. 
-                        
-                        // Damit die null pointer exception auch geworfen wird, muss sich
-                        // der try-catch-Block innerhalb des Runnable Objekts befinden,
-                        // da sonst nur eine nichtssagende  
-                        // java.lang.reflect.InvocationTargetException Ausnahme geworfen
-                        // werden wuerde.
-                        }
+                    show_progress(guistart, "Archiving old receipts ... OK.");
+                    finished = true;
                     }
                 });
+            return;
             }
-        
-       
+            
         for (int i = 0; i < files.length; i++)
             {
+            remaining.add(files[i].getName());
+            }
             
-            Files.move(files[i].toPath(), new File("archive/receipts/"
-                    + files[i].getName()).toPath(), REPLACE_EXISTING);
+        final AtomicInteger   archived = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(THREADS, new ThreadFactory()
+            {
+            private final AtomicInteger number = new AtomicInteger();
             
-            final int i_final = i;
+            @Override
+            public Thread newThread(Runnable runnable)
+                {
+                // Daemon-Threads: Beim Beenden des Transfer-Clients verbleiben
+                // die noch nicht archivierten Quittungen im Sedex-Receipts-Ordner
+                // (vgl. shutdown).
+                final Thread thread = new Thread(runnable, "TFC-Archiving-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+                }
+            });
             
-            SwingUtilities.invokeAndWait(new Runnable()
+        for (int i = 0; i < files.length; i++)
+            {
+            final File file = files[i];
+            pool.execute(new Runnable()
                 {
                 @Override
                 public void run()
                     {
-                    try
+                    if (stopped)
                         {
-                        String update_text = i_final + " of " + files.length + " old receipts archived.";
-                        guistart.update_statusfield(GuiStart.StatusField.STATUSFIELD1,update_text);
+                        remaining.remove(file.getName());
+                        return;
                         }
-                    catch(Exception e)
+                    archive_receipt(file);
+                    remaining.remove(file.getName());
+                    if (archived.incrementAndGet() == files.length)
                         {
-                        // Hier koennte hoechstens eine null pointer exception geworfen werden,
-                        // wenn das guistart-Objekt noch nicht durch den EDT-Thread fertig 
-                        // konstruiert ist (vgl. main-Methode). Durch Verwendung von invokeAndWait 
-                        // in der main-Methode ist jedoch sichergestellt, dass das 
-                        // guistart-Objekt bereits durch den EDT-Thread erstellt worden ist. 
-                        
-                        // Damit die null pointer exception auch geworfen wird, muss sich
-                        // der try-catch-Block innerhalb des Runnable Objekts befinden,
-                        // da sonst nur eine nichtssagende  
-                        // java.lang.reflect.InvocationTargetException Ausnahme geworfen
-                        // werden wuerde.
+                        Logger.info("OLD RECEIPTS ARCHIVED: " + files.length);
                         }
-                    
                     }
                 });
-            
-            
-            Logger.info("OLD RECEIPT MOVED TO archive/receipts: " + files[i].getName());
-            
             }
+        pool.shutdown();
         
-        //Nachfolgend werden Files ins Archiv verschoben, 
-        //die aufgrund von ausserordentlichen Unterbruechen 
-        //im Stage-Folder zurueckgeblieben sind.
-        File dir_stage = new File("stage/");
-        final File[] files_stage = dir_stage.listFiles();
+        // Die Fortschrittsanzeige wird vom EDT-Thread in festen Abstaenden
+        // aktualisiert (statt mit invokeAndWait nach jeder Quittung).
+        final Timer timer = new Timer(UPDATE_INTERVAL, new ActionListener()
+            {
+            @Override
+            public void actionPerformed(ActionEvent e)
+                {
+                final int count = archived.get();
+                if (count < files.length)
+                    {
+                    show_progress(guistart, count + " of " + files.length + " old receipts archived.");
+                    return;
+                    }
+                    
+                ((Timer) e.getSource()).stop();
+                show_progress(guistart, "Archiving old receipts ... OK.");
+                finished = true;
+                }
+            });
+        timer.setInitialDelay(0);
+        timer.start();
         
-        for (int i = 0; i < files_stage.length; i++)
+        }
+        
+    /**
+     * Shows the progress of the archiving in the status field of the splash screen or, once the splash screen has been
+     * hidden, in the progress label of the GUI (called on the EDT).
+     *
+     * @param guistart The guistart object to be used.
+     * @param text     The text to be shown.
+     */
+    private static void show_progress(GuiStart guistart, String text)
+        {
+        if (label_progress == null)
+            {
+            guistart.update_statusfield(GuiStart.StatusField.STATUSFIELD1,text);
+            }
+        else
+            {
+            label_progress.setText(text);
+            }
+        }
+        
+    /**
+     * Hides the splash screen after the GUI has been started (called on the EDT). If old receipts are still being
+     * archived, the progress is shown in the progress label of the GUI from now on.
+     *
+     * @param guistart The guistart object to be used.
+     * @param gui      The GUI to be used.
+     */
+    protected static void release_splash(GuiStart guistart, Gui gui)
+        {
+        guistart.setVisible(false);
+        if (!finished)
             {
+            label_progress = gui.get_label_progress();
+            label_progress.setText("Archiving old receipts ... ");
+            }
+        }
+        
+    /**
+     * Checks whether a file in the sedex receipts folder is an old receipt which is still being archived (such files
+     * are skipped by the regular processing of the receipts).
+     *
+     * @param  file_name The name of the file.
+     * @return           True if the file is an old receipt which has not yet been archived.
+     */
+    public static boolean is_old_receipt(final String file_name)
+        {
+        return remaining.contains(file_name);
+        }
+        
+    /**
+     * Stops the archiving of the old receipts and waits until the receipts being archived have been moved (called when
+     * the transfer-client is exited, before the journal is closed). The receipts which have not yet been archived remain
+     * in the sedex receipts folder and are archived after the next start.
+     */
+    protected static void shutdown()
+        {
+        
+        stopped = true;
+        
+        final ExecutorService current_pool = pool;
+        if (current_pool == null)
+            {
+            return;
+            }
             
-            Files.move(files_stage[i].toPath(), new File("archive/stage/"
-                    + files_stage[i].getName()).toPath(), REPLACE_EXISTING);
+        try
+            {
+            current_pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
             
-            Logger.info("UNPROCESSED FILE MOVED FROM stage TO archive/stage: " + files[i].getName());
+        }
+        
+    /**
+     * Archives a single old receipt (background thread).
+     *
+     * @param file The receipt file.
+     */
+    private static void archive_receipt(File file)
+        {
+        
+        try
+            {
             
+            // Quittungen zu haengigen Uebertragungen (gemaess Journal) werden
+            // vor dem Archivieren ausgewertet, damit die Zuordnung auch
+            // nach einem Neustart erhalten bleibt.
+            if (Processing_Journal.apply_old_receipt(file))
+                {
+                Logger.info("OLD RECEIPT APPLIED TO PENDING TRANSFER: " + file.getName());
+                }
+                
+            FileTransfer.move(file.toPath(), new File("archive/receipts/"
+                    + file.getName()).toPath());
+                    
+            Logger.info("OLD RECEIPT MOVED TO archive/receipts: " + file.getName());
+            
+            }
+        catch (NoSuchFileException e)
+            {
+            // Die Quittung ist inzwischen aus dem Sedex-Receipts-Ordner
+            // entfernt worden.
+            }
+        catch (Exception e)
+            {
+            Logger.error(e);
             }
             
         }
@@ -40,6 +40,18 @@ public class Conf
      */
     public static final boolean           LOG_ALSO_TO_CONSOLE         = false;
     
+    /**
+     * Number of days after which a pending transfer (i.e. a transfer without receipts from all recipients) is no longer
+     * kept in the journal.
+     */
+    public static final int               JOURNAL_MAX_AGE_DAYS        = 30;
+    
+    /** Maximum number of receipts which are kept while they cannot be assigned to a transfer. */
+    public static final int               RECEIPTS_PENDING_CAPACITY   = 10000;
+    
+    /** Number of minutes after which a receipt which cannot be assigned to a transfer is evicted. */
+    public static final int               RECEIPTS_PENDING_TTL        = 60;
+    
     
     // GUI
     
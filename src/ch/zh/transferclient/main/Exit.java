@@ -17,6 +17,9 @@
 package ch.zh.transferclient.main;
 
 import ch.zh.transferclient.controller.*;
+import ch.zh.transferclient.processing.Processing_Journal;
+import ch.zh.transferclient.processing.Processing_Pipeline;
+import ch.zh.transferclient.processing.Processing_Recovery;
 import ch.zh.transferclient.properties.*;
 
 /**
@@ -72,6 +75,25 @@ public class Exit
         
         controller.deactivation();
         
+        // --------------------------------------------------//
+        // WAITING FOR THE BACKGROUND THREADS //
+        // --------------------------------------------------//
+        // Alle Threads, die ins Journal schreiben, muessen beendet sein,
+        // bevor das Journal geschlossen wird: der laufende Batch des
+        // Executor-Services, die Pipeline (die bereits archivierten
+        // Files werden noch fertig verarbeitet), die Wiederaufnahme
+        // unterbrochener Uebertragungen und das Archivieren der alten
+        // Quittungen.
+        controller.await_termination();
+        Processing_Pipeline.shutdown();
+        Processing_Recovery.await_completion();
+        Archiving_Old_Receipts.shutdown();
+        
+        // --------------------------------------------------//
+        // CLOSING THE JOURNAL //
+        // --------------------------------------------------//
+        Processing_Journal.close();
+        
         // --------------------------------------------------//
         // CLOSING THE LOGFILE //
         // --------------------------------------------------//
@@ -18,13 +18,37 @@ package ch.zh.transferclient.main;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
 
 import ch.zh.transferclient.util.*;
 
 /**
  * This class is used for logging messages.
  *
+ * In the synchronous mode (default), every message is written and flushed by the thread which logs it. In the
+ * asynchronous mode (LOG_ASYNC=TRUE), the messages are put into a lock-free queue together with the time of the call
+ * and written by a background thread, which also formats them and flushes the log after FLUSH_LINES lines or
+ * FLUSH_INTERVAL milliseconds (and, if LOG_FLUSH_ON_ERROR=TRUE, as soon as an error has been logged). The queue is
+ * drained completely by close_bufferedwriter().
+ *
+ * The active log is rotated as soon as it exceeds LOG_ROTATE_SIZE megabytes or (if LOG_ROTATE_DAILY=TRUE) at midnight
+ * (both switched off by default). The rotated segment is renamed to "&lt;name&gt;_&lt;timestamp&gt;.rotated.log" and
+ * compressed to a ".rotated.log.gz" file by a background thread, which then deletes the oldest compressed segments
+ * exceeding LOG_RETENTION (0 by default, i.e. all segments are kept). Only files with the suffix of the segments are
+ * subject to the retention, so the logs of the sessions are never deleted. Segments which have not been compressed
+ * because of a crash are compressed at the next startup.
+ *
  * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
  * @version 2.4
  */
@@ -37,11 +61,71 @@ public class Logger
         DEBUG, INFO
     };
     
+    /** Number of lines after which the background thread flushes the log. */
+    private static final int                           FLUSH_LINES    = 256;
+    
+    /** Time in milliseconds after which the background thread flushes the log. */
+    private static final long                          FLUSH_INTERVAL = 1000;
+    
+    /** Maximum time in milliseconds the background thread waits for new messages. */
+    private static final long                          POLL_INTERVAL  = 50;
+    
+    /** Suffix of the rotated log segments (distinct from the logs of the sessions). */
+    private static final String                        ROTATED_SUFFIX = ".rotated.log";
+    
+    /** Suffix of the compressed log segments. */
+    private static final String                        GZIP_SUFFIX    = ".gz";
+    
+    /** Suffix of a compressed log segment which is still being written. */
+    private static final String                        PART_SUFFIX    = ".part";
+    
     /** Indicates whether the debug level messages should be suppressed or not. */
-    private static boolean        suppress_debug = true;
+    private static boolean                             suppress_debug = true;
     
     /** Writer which is used to write to the log. */
-    private static BufferedWriter bw;
+    private static BufferedWriter                      bw;
+    
+    /** Lock which protects the writer (held while writing, never while waiting for the background thread). */
+    private static final Object                        LOCK           = new Object();
+    
+    /** Messages which have not yet been written (asynchronous mode). */
+    private static final ConcurrentLinkedQueue<Entry>  queue          = new ConcurrentLinkedQueue<Entry>();
+    
+    /** The background thread (null in the synchronous mode). */
+    private static volatile Thread                     writer;
+    
+    /** Indicates whether the log should be flushed immediately after an error (asynchronous mode). */
+    private static volatile boolean                    flush_on_error = true;
+    
+    /** Indicates whether the background thread should flush the log as soon as possible. */
+    private static volatile boolean                    flush_requested;
+    
+    /** Indicates whether the background thread should terminate. */
+    private static volatile boolean                    stop_requested;
+    
+    /** Indicates whether the shutdown hook has been registered. */
+    private static boolean                             hook_registered;
+    
+    /** The active log file (protected by LOCK). */
+    private static File                                log_file;
+    
+    /** Approximate number of bytes written to the active log file (protected by LOCK). */
+    private static long                                log_size;
+    
+    /** Size in bytes from which on the log is rotated (0 = no size based rotation). */
+    private static long                                rotate_size;
+    
+    /** Indicates whether the log is rotated at midnight. */
+    private static boolean                             rotate_daily;
+    
+    /** Time in milliseconds from which on the log is rotated (midnight, only if rotate_daily is true). */
+    private static long                                rotate_time;
+    
+    /** Number of compressed log segments to be kept (0 = all). */
+    private static int                                 retention;
+    
+    /** The background thread which compresses the rotated segments (created at the first rotation). */
+    private static ExecutorService                     archiver;
     
     /**
      * Constructs a Logger object.
@@ -50,18 +134,41 @@ public class Logger
         {
         //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
         }
-    
+        
     /**
      * Initializes the logger.
      *
-     * @param overwrite Indicates whether the log shall be overwritten always or not.
-     * @param suppress  Indicates whether the debug messages should be suppressed or not.
-     * 
+     * @param overwrite      Indicates whether the log shall be overwritten always or not.
+     * @param suppress       Indicates whether the debug messages should be suppressed or not.
+     * @param async          Indicates whether the messages should be written by a background thread.
+     * @param flush_on_error Indicates whether the log should be flushed immediately after an error (asynchronous mode).
+     * @param rotate_size_mb Size in megabytes from which on the log is rotated (0 = no size based rotation).
+     * @param rotate_daily   Indicates whether the log is rotated at midnight.
+     * @param retention      Number of compressed log segments to be kept (0 = all).
      */
-    public static synchronized void initialize(boolean overwrite, boolean suppress)
+    public static synchronized void initialize
+    /* @formatter:off */
+        (
+        boolean overwrite,
+        boolean suppress,
+        boolean async,
+        boolean flush_on_error,
+        int     rotate_size_mb,
+        boolean rotate_daily,
+        int     retention
+        )
+    /* @formatter:on */
         {
         
-        suppress_debug = suppress;
+        suppress_debug         = suppress;
+        Logger.flush_on_error  = flush_on_error;
+        Logger.rotate_size     = Math.max(0, rotate_size_mb) * 1024L * 1024L;
+        Logger.rotate_daily    = rotate_daily;
+        Logger.retention       = Math.max(0, retention);
+        
+        // Ein allenfalls laufender Hintergrund-Thread wird zuerst beendet
+        // (die noch nicht geschriebenen Meldungen werden dabei geschrieben).
+        stop_writer();
         
         try
             {
@@ -79,21 +186,47 @@ public class Logger
                 
             if (overwrite)
                 {
-                bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("log/log.log"), StandardCharsets.UTF_8));
+                log_file = new File("log/log.log");
                 }
             else
                 {
                 String timestamp = TimeStamp.getstamp_for_logfile();
-                bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("log/log_" + timestamp
-                        + ".log"), StandardCharsets.UTF_8));
+                log_file = new File("log/log_" + timestamp + ".log");
                 }
-                
+            open_log_file();
+            
+            // Segmente, deren Komprimierung durch einen Absturz
+            // unterbrochen worden ist, werden nachtraeglich komprimiert.
+            // Dies geschieht nur bei eingeschalteter Rotation und im
+            // Hintergrund-Thread, sodass der Start den Log-Ordner
+            // (mit allen Logs der frueheren Sessions) nicht durchsuchen muss.
+            if ((Logger.rotate_size > 0) || Logger.rotate_daily)
+                {
+                final File folder = log_folder;
+                synchronized (LOCK)
+                    {
+                    get_archiver().execute(new Runnable()
+                        {
+                        @Override
+                        public void run()
+                            {
+                            resume_compression(folder);
+                            }
+                        });
+                    }
+                }
+            
             }
         catch (Exception e)
             {
             e.printStackTrace();
             }
             
+        if (async)
+            {
+            start_writer();
+            }
+            
         }
         
     /**
@@ -102,15 +235,39 @@ public class Logger
      */
     public static synchronized void close_bufferedwriter()
         {
+        
+        // Im asynchronen Modus werden zuerst alle Meldungen der Queue geschrieben.
+        stop_writer();
+        
         try
             {
-            bw.flush();
-            bw.close();
+            if (bw != null)
+                {
+                bw.flush();
+                bw.close();
+                bw = null;
+                }
             }
         catch (Exception e)
             {
-            error(e);
+            e.printStackTrace();
             }
+            
+        // Eine laufende Komprimierung wird noch abgeschlossen.
+        if (archiver != null)
+            {
+            archiver.shutdown();
+            try
+                {
+                archiver.awaitTermination(10, TimeUnit.SECONDS);
+                }
+            catch (InterruptedException e)
+                {
+                Thread.currentThread().interrupt();
+                }
+            archiver = null;
+            }
+            
         }
         
     /**
@@ -118,7 +275,7 @@ public class Logger
      * 
      * @param message The String to be written to the log.
      */
-    public static synchronized void debug(String message)
+    public static void debug(String message)
         {
         if (!suppress_debug)
             {
@@ -131,7 +288,7 @@ public class Logger
      * 
      * @param message The String to be written to the log.
      */
-    public static synchronized void info(String message)
+    public static void info(String message)
         {
         write_to_log(LogLevel.INFO, message);
         }
@@ -142,73 +299,545 @@ public class Logger
      * @param level   The level of the message.
      * @param message The String to be written to the log.
      */
-    private static synchronized void write_to_log(LogLevel level, String message)
+    private static void write_to_log(LogLevel level, String message)
         {
         
-        Date   date = new Date();
+        // Im Aufrufer wird nur der Zeitpunkt festgehalten; formatiert wird
+        // der Eintrag erst beim Schreiben (im asynchronen Modus also durch
+        // den Hintergrund-Thread).
+        final Entry entry = new Entry(System.currentTimeMillis(), level, message, null);
         
-        String line = "[ " + date.toString() + " ][ " + level.toString() + " ] " + message;
+        if (Conf.LOG_ALSO_TO_CONSOLE)
+            {
+            System.out.println(entry.format());
+            }
+            
+        append(entry);
         
-        try
+        }
+        
+    /**
+     * Writes an error message to the log.
+     * 
+     * @param exception Exception to be written to the log.
+     */
+    public static void error(Exception exception)
+        {
+        
+        // Die Zeilen eines Fehlers werden als ein einziger Eintrag geschrieben,
+        // damit sie nicht mit Meldungen anderer Threads vermischt werden.
+        final Entry entry = new Entry(System.currentTimeMillis(), null, null, exception);
+        
+        if (Conf.LOG_ALSO_TO_CONSOLE)
             {
+            System.out.println(entry.format());
+            }
             
-            if (Conf.LOG_ALSO_TO_CONSOLE)
+        append(entry);
+        
+        }
+        
+    /**
+     * Appends an entry to the log.
+     * 
+     * @param entry The entry.
+     */
+    private static void append(final Entry entry)
+        {
+        
+        final Thread current_writer = writer;
+        if (current_writer != null)
+            {
+            // Asynchroner Modus: Der Aufrufer wartet weder auf eine Sperre
+            // noch auf die Festplatte.
+            queue.add(entry);
+            if ((entry.exception != null) && flush_on_error)
                 {
-                System.out.println(line);
+                flush_requested = true;
+                LockSupport.unpark(current_writer);
                 }
                 
-            bw.write(line);
-            bw.newLine();
-            bw.flush();
+            // Wurde der Hintergrund-Thread inzwischen gestoppt (vgl.
+            // stop_writer), ist nicht sicher, ob die Queue danach nochmals
+            // geleert worden ist: Der Eintrag wird dann selbst geschrieben.
+            if (writer == current_writer)
+                {
+                return;
+                }
             }
-        catch (Exception e)
+            
+        synchronized (LOCK)
             {
-            e.printStackTrace();
+            try
+                {
+                write_queue();
+                if (current_writer == null)
+                    {
+                    write_entry(entry.format());
+                    }
+                bw.flush();
+                }
+            catch (Exception e)
+                {
+                e.printStackTrace();
+                }
             }
             
         }
         
     /**
-     * Writes an error message to the log.
-     * 
-     * @param exception Exception to be written to the log.
+     * Starts the background thread (asynchronous mode).
      */
-    public static synchronized void error(Exception exception)
+    private static void start_writer()
         {
         
-        Date date = new Date();
+        stop_requested = false;
+        
+        final Thread thread = new Thread(new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                drain();
+                }
+            }, "TFC-Logger");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        
+        // Falls die JVM beendet wird, ohne dass close_bufferedwriter()
+        // aufgerufen worden ist, gehen die Meldungen der Queue nicht verloren.
+        if (hook_registered)
+            {
+            return;
+            }
+        hook_registered = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                close_bufferedwriter();
+                }
+            }, "TFC-Logger-Shutdown"));
+            
+        }
+        
+    /**
+     * Stops the background thread and writes the remaining messages (no action in the synchronous mode).
+     */
+    private static void stop_writer()
+        {
+        
+        final Thread current_writer = writer;
+        if (current_writer == null)
+            {
+            return;
+            }
+            
+        // Ab jetzt wird wieder synchron geschrieben. Ein Aufrufer, der den
+        // Hintergrund-Thread noch gesehen hat, stellt seinen Eintrag in die
+        // Queue und schreibt sie selbst, falls sie bereits geleert worden ist
+        // (vgl. append).
+        writer         = null;
+        stop_requested = true;
+        LockSupport.unpark(current_writer);
         try
             {
+            current_writer.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
             
-            if (Conf.LOG_ALSO_TO_CONSOLE)
+        // Meldungen, die nach dem letzten Durchgang des Hintergrund-Threads
+        // in die Queue gelangt sind, werden noch geschrieben.
+        synchronized (LOCK)
+            {
+            try
                 {
-                
-                System.out.println("");
-                System.out.println("[ " + date.toString() + " ][ ERROR ][ EXCEPTION   ] " + exception.toString());
-                for (int i = 0; i < exception.getStackTrace().length; i++)
+                write_queue();
+                bw.flush();
+                }
+            catch (Exception e)
+                {
+                e.printStackTrace();
+                }
+            }
+            
+        }
+        
+    /**
+     * Loop of the background thread.
+     */
+    private static void drain()
+        {
+        
+        long last_flush = System.currentTimeMillis();
+        int  unflushed  = 0;
+        
+        while (!stop_requested)
+            {
+            try
+                {
+                synchronized (LOCK)
                     {
-                    System.out.println("[ " + date.toString() + " ][ ERROR ][ STACK TRACE ] "
-                            + exception.getStackTrace()[i].toString());
-                    }
+                    unflushed += write_queue();
                     
+                    final long now = System.currentTimeMillis();
+                    if ((unflushed > 0) && (flush_requested || (unflushed >= FLUSH_LINES) || (now - last_flush >= FLUSH_INTERVAL)))
+                        {
+                        bw.flush();
+                        unflushed  = 0;
+                        last_flush = now;
+                        }
+                    flush_requested = false;
+                    }
+                }
+            catch (Exception e)
+                {
+                e.printStackTrace();
                 }
                 
-            bw.newLine();
-            bw.write("[ " + date.toString() + " ][ ERROR ][ EXCEPTION   ] " + exception.toString());
-            bw.newLine();
-            for (int i = 0; i < exception.getStackTrace().length; i++)
+            // Warten auf neue Meldungen (oder auf eine Aufforderung zum Flush)
+            if (queue.isEmpty() && !stop_requested)
                 {
-                bw.write("[ " + date.toString() + " ][ ERROR ][ STACK TRACE ] "
-                        + exception.getStackTrace()[i].toString());
-                bw.newLine();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL));
                 }
-            bw.flush();
+            }
             
+        }
+        
+    /**
+     * Writes the messages of the queue (without flushing).
+     * 
+     * @return             Number of written entries.
+     * @throws IOException IO operation fails.
+     */
+    private static int write_queue() throws IOException
+        {
+        int   written = 0;
+        Entry entry;
+        while ((entry = queue.poll()) != null)
+            {
+            write_entry(entry.format());
+            written++;
             }
-        catch (Exception e)
+        return written;
+        }
+        
+    /**
+     * Writes an entry to the active log file and rotates the log beforehand if necessary (caller holds LOCK).
+     * 
+     * @param  entry       The entry (one or several lines without the final line separator).
+     * @throws IOException IO operation fails.
+     */
+    private static void write_entry(final String entry) throws IOException
+        {
+        
+        if ((log_size > 0) && (((rotate_size > 0) && (log_size >= rotate_size))
+                || (rotate_daily && (System.currentTimeMillis() >= rotate_time))))
             {
+            rotate();
+            }
+            
+        bw.write(entry);
+        bw.newLine();
+        
+        // Die Groesse wird nur geschaetzt (Zeichen statt Bytes), damit dafuer
+        // weder kodiert noch das Dateisystem abgefragt werden muss.
+        log_size += entry.length() + System.lineSeparator().length();
+        
+        }
+        
+    /**
+     * Opens the active log file (a new, empty file) and computes the time of the next daily rotation (caller holds
+     * LOCK or the class lock during the initialization).
+     * 
+     * @throws IOException IO operation fails.
+     */
+    private static void open_log_file() throws IOException
+        {
+        bw          = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(log_file), StandardCharsets.UTF_8));
+        log_size    = 0;
+        rotate_time = next_midnight();
+        }
+        
+    /**
+     * @return The next midnight (local time) in milliseconds.
+     */
+    private static long next_midnight()
+        {
+        return LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        
+    /**
+     * Rotates the log: the active log file is renamed and handed over to the background thread for the compression,
+     * then a new active log file is opened (caller holds LOCK).
+     * 
+     * @throws IOException IO operation fails.
+     */
+    private static void rotate() throws IOException
+        {
+        
+        bw.flush();
+        bw.close();
+        
+        final String name  = log_file.getName();
+        final String base  = name.endsWith(".log") ? name.substring(0, name.length() - 4) : name;
+        final String stamp = TimeStamp.getstamp_for_logfile();
+        
+        File segment = new File(log_file.getParentFile(), base + "_" + stamp + ROTATED_SUFFIX);
+        for (int i = 1; segment.exists() || new File(segment.getPath() + GZIP_SUFFIX).exists(); i++)
+            {
+            segment = new File(log_file.getParentFile(), base + "_" + stamp + "_" + i + ROTATED_SUFFIX);
+            }
+            
+        try
+            {
+            Files.move(log_file.toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        catch (IOException e)
+            {
+            // Kann die Datei nicht umbenannt werden (z.B. weil sie von einem
+            // anderen Prozess geoeffnet ist), wird in die bisherige Datei
+            // weitergeschrieben und die Rotation spaeter nochmals versucht.
             e.printStackTrace();
+            bw          = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(log_file, true), StandardCharsets.UTF_8));
+            log_size    = 0;
+            rotate_time = next_midnight();
+            return;
+            }
+            
+        open_log_file();
+        
+        final File rotated = segment;
+        get_archiver().execute(new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                compress(rotated);
+                apply_retention(rotated.getParentFile());
+                }
+            });
+            
+        }
+        
+    /**
+     * Compresses the rotated segments which have not been compressed yet (e.g. because of a crash); incomplete
+     * compressed files are deleted beforehand (background thread, only if the rotation is enabled).
+     * 
+     * @param folder The log folder.
+     */
+    private static void resume_compression(final File folder)
+        {
+        
+        final File[] files = folder.listFiles();
+        if (files == null)
+            {
+            return;
             }
+            
+        for (File file : files)
+            {
+            if (file.getName().endsWith(ROTATED_SUFFIX + GZIP_SUFFIX + PART_SUFFIX))
+                {
+                // Das Segment selbst wird erst nach der Komprimierung geloescht.
+                file.delete();
+                }
+            }
+            
+        for (File file : files)
+            {
+            if (file.isFile() && file.getName().endsWith(ROTATED_SUFFIX))
+                {
+                compress(file);
+                }
+            }
+        apply_retention(folder);
+        
+        }
+        
+    /**
+     * Returns the background thread which compresses the rotated segments (created at the first call).
+     * 
+     * @return The executor of the background thread.
+     */
+    private static ExecutorService get_archiver()
+        {
+        if (archiver == null)
+            {
+            archiver = Executors.newSingleThreadExecutor(new ThreadFactory()
+                {
+                @Override
+                public Thread newThread(Runnable runnable)
+                    {
+                    final Thread thread = new Thread(runnable, "TFC-Logger-Archiver");
+                    thread.setDaemon(true);
+                    return thread;
+                    }
+                });
+            }
+        return archiver;
+        }
+        
+    /**
+     * Compresses a rotated segment to a ".log.gz" file and deletes the segment afterwards (background thread).
+     * 
+     * @param segment The rotated segment.
+     */
+    private static void compress(final File segment)
+        {
+        
+        // Die komprimierte Datei wird erst nach dem vollstaendigen Schreiben
+        // unter ihrem endgueltigen Namen abgelegt.
+        final File target  = new File(segment.getPath() + GZIP_SUFFIX);
+        final File partial = new File(target.getPath() + PART_SUFFIX);
+        
+        // Ein Segment kann von resume_compression und von der Rotation
+        // eingereiht worden sein; es wird nur einmal komprimiert.
+        if (!segment.isFile())
+            {
+            return;
+            }
+        
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(partial)))
+            {
+            Files.copy(segment.toPath(), out);
+            }
+        catch (IOException e)
+            {
+            e.printStackTrace();
+            partial.delete();
+            return;
+            }
+            
+        try
+            {
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment.toPath());
+            }
+        catch (IOException e)
+            {
+            e.printStackTrace();
+            }
+            
+        }
+        
+    /**
+     * Deletes the oldest compressed segments exceeding the retention limit (background thread).
+     * 
+     * @param folder The log folder.
+     */
+    private static void apply_retention(final File folder)
+        {
+        
+        if (retention <= 0)
+            {
+            return;
+            }
+            
+        final File[] segments = folder.listFiles(new FileFilter()
+            {
+            @Override
+            public boolean accept(File file)
+                {
+                // Nur rotierte Segmente (nie die Logs der einzelnen Sessions)
+                return file.isFile() && file.getName().endsWith(ROTATED_SUFFIX + GZIP_SUFFIX);
+                }
+            });
+            
+        if ((segments == null) || (segments.length <= retention))
+            {
+            return;
+            }
+            
+        // Die aeltesten Segmente zuerst
+        Arrays.sort(segments, new Comparator<File>()
+            {
+            @Override
+            public int compare(File a, File b)
+                {
+                return Long.compare(a.lastModified(), b.lastModified());
+                }
+            });
+            
+        for (int i = 0; i < segments.length - retention; i++)
+            {
+            if (!segments[i].delete())
+                {
+                System.err.println("Log segment could not be deleted: " + segments[i].getPath());
+                }
+            }
+            
+        }
+        
+    /**
+     * An entry of the log which has not been formatted yet.
+     */
+    private static final class Entry
+        
+        {
+        
+        /** Point of time of the call in milliseconds. */
+        private final long      millis;
+        
+        /** The level of the message (null for an error). */
+        private final LogLevel  level;
+        
+        /** The message (null for an error). */
+        private final String    message;
+        
+        /** The exception (null for a message). */
+        private final Exception exception;
+        
+        /**
+         * Constructs an Entry object.
+         *
+         * @param millis    Point of time of the call in milliseconds.
+         * @param level     The level of the message (null for an error).
+         * @param message   The message (null for an error).
+         * @param exception The exception (null for a message).
+         */
+        private Entry(final long millis, final LogLevel level, final String message, final Exception exception)
+            {
+            this.millis    = millis;
+            this.level     = level;
+            this.message   = message;
+            this.exception = exception;
+            }
+            
+        /**
+         * Formats the entry.
+         *
+         * @return The entry (one or several lines without the final line separator).
+         */
+        private String format()
+            {
+            
+            final String date = new Date(this.millis).toString();
+            
+            if (this.exception == null)
+                {
+                return "[ " + date + " ][ " + this.level.toString() + " ] " + this.message;
+                }
+                
+            final String              newline = System.lineSeparator();
+            final StackTraceElement[] trace   = this.exception.getStackTrace();
+            final StringBuilder       text    = new StringBuilder();
+            text.append(newline);
+            text.append("[ " + date + " ][ ERROR ][ EXCEPTION   ] " + this.exception.toString());
+            for (int i = 0; i < trace.length; i++)
+                {
+                text.append(newline);
+                text.append("[ " + date + " ][ ERROR ][ STACK TRACE ] " + trace[i].toString());
+                }
+            return text.toString();
+            
+            }
+            
         }
         
     }
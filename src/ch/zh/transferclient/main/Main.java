@@ -21,6 +21,8 @@ import java.util.ArrayList;
 import javax.swing.*;
 
 import ch.zh.transferclient.gui.*;
+import ch.zh.transferclient.processing.Processing_Journal;
+import ch.zh.transferclient.processing.Processing_Recovery;
 import ch.zh.transferclient.properties.*;
 import ch.zh.transferclient.util.ThreadAnalyzer;
 
@@ -81,15 +83,37 @@ public class Main
             // Logger einrichten
             boolean    log_overwrite      = properties.get_log_overwrite();
             boolean    log_suppress_debug = properties.get_log_suppress_debug();
-            Logger.initialize(log_overwrite, log_suppress_debug);
+            boolean    log_async          = properties.get_log_async();
+            boolean    log_flush_on_error = properties.get_log_flush_on_error();
+            int        log_rotate_size    = properties.get_log_rotate_size();
+            boolean    log_rotate_daily   = properties.get_log_rotate_daily();
+            int        log_retention      = properties.get_log_retention();
+            Logger.initialize(log_overwrite, log_suppress_debug, log_async, log_flush_on_error, log_rotate_size, log_rotate_daily,
+                    log_retention);
             
             Logger.info("##### BEGIN SESSION #####");
             Logger.info("TRANSFER-CLIENT " + Conf.VERSION + " STARTED WITH THE FOLLOWING PROPERTIES:");
             Logger.info("   ---");
+            Logger.info("   DELAY                           =" + properties.get_delay());
+            Logger.info("   BATCH_SIZE                      =" + properties.get_batch_size());
+            Logger.info("   BATCH_TIME_BUDGET               =" + properties.get_batch_time_budget());
+            Logger.info("   RECEIPTS_BATCH_SIZE             =" + properties.get_receipts_batch_size());
+            Logger.info("   WATCHSERVICE                    =" + properties.get_watchservice());
+            Logger.info("   WATCHSERVICE_SWEEP_DELAY        =" + properties.get_watchservice_sweep_delay());
+            Logger.info("   STABILITY_WINDOW                =" + properties.get_stability_window());
             Logger.info("   ZIP_COMPRESSION                 =" + properties.get_zip_compression());
+            Logger.info("   ZIP_COMPRESSION_LEVEL           =" + properties.get_zip_compression_level());
+            Logger.info("   ZIP_COMPRESSION_ADAPTIVE        =" + properties.get_zip_compression_adaptive());
+            Logger.info("   ZIP_PARALLELISM                 =" + properties.get_zip_parallelism());
+            Logger.info("   PIPELINE_ZIP_WORKERS            =" + properties.get_pipeline_zip_workers());
             Logger.info("   ---");
             Logger.info("   LOG_OVERWRITE                   =" + properties.get_log_overwrite());
             Logger.info("   LOG_SUPPRESS_DEBUG              =" + properties.get_log_suppress_debug());
+            Logger.info("   LOG_ASYNC                       =" + properties.get_log_async());
+            Logger.info("   LOG_FLUSH_ON_ERROR              =" + properties.get_log_flush_on_error());
+            Logger.info("   LOG_ROTATE_SIZE                 =" + properties.get_log_rotate_size());
+            Logger.info("   LOG_ROTATE_DAILY                =" + properties.get_log_rotate_daily());
+            Logger.info("   LOG_RETENTION                   =" + properties.get_log_retention());
             Logger.info("   ARCHIVE_DATAFILES               =" + properties.get_archive_datafiles());
             Logger.info("   ---");
             Logger.info("   LANGUAGE                        =" + properties.get_language());
@@ -111,10 +135,20 @@ public class Main
             // Creating subfolders if they do no exist.
             CreateSubFolders.create_subfolders();
             
+            // Zustand der haengigen Uebertragungen aus dem Journal
+            Processing_Journal.open();
+            Processing_Recovery.prepare(properties);
+            
             // Treatment of old receipts
+            // (die Quittungen werden im Hintergrund archiviert, der Fortschritt
+            // wird laufend im Statusfeld bzw. nach dem Start des GUI in
+            // dessen Fortschrittsanzeige angezeigt)
             update_statusfield(GuiStart.StatusField.STATUSFIELD1,"Archiving old receipts ... ");
             Archiving_Old_Receipts.execute(properties,guistart);
-            update_statusfield(GuiStart.StatusField.STATUSFIELD1,"Archiving old receipts ... OK.");
+            
+            // Unterbrochene Uebertragungen werden parallel zum Aufstarten
+            // des GUI abgeschlossen.
+            Processing_Recovery.start(properties);
             
             // Labels abfuellen
             update_statusfield(GuiStart.StatusField.STATUSFIELD2,"Filling up language labels ... ");
@@ -131,10 +165,14 @@ public class Main
                     {
                     // Gui gui = new Gui(properties);
                     Gui gui = Gui.get_newInstance(properties);
+                    Processing_Journal.restore(gui);
                     gui.setExtendedState(gui.getExtendedState() | Frame.MAXIMIZED_BOTH);
                     gui.setVisible(true);
+                    Processing_Recovery.report(gui);
                     
-                    guistart.setVisible(false);
+                    // Der Startbildschirm wird geschlossen; werden noch alte
+                    // Quittungen archiviert, zeigt das GUI den Fortschritt an.
+                    Archiving_Old_Receipts.release_splash(guistart, gui);
                     }
                 });
             
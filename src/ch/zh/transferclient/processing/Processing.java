@@ -27,7 +27,8 @@ import javax.swing.SwingUtilities;
 import ch.zh.transferclient.gui.*;
 import ch.zh.transferclient.main.Logger;
 import ch.zh.transferclient.properties.Properties;
-import ch.zh.transferclient.util.TimeStamp;
+import ch.zh.transferclient.util.FileTransfer;
+import ch.zh.transferclient.util.MessageIdGenerator;
 
 /**
  * This class is used to process the input and receipt files.
@@ -48,16 +49,47 @@ public class Processing
         }
     
     
+    /**
+     * Flag which indicates whether the deactivation of the transfer-client has been requested. It is checked before
+     * every input file of a batch, so that the executor thread terminates quickly after a deactivation.
+     */
+    private static volatile boolean deactivation_requested = false;
+    
+    /**
+     * Signals the executor thread whether the deactivation of the transfer-client has been requested.
+     * 
+     * @param value True if the deactivation has been requested, false if the transfer-client is being activated.
+     */
+    public static void set_deactivation_requested(final boolean value)
+        {
+        deactivation_requested = value;
+        }
+    
+    /**
+     * @return True if the deactivation of the transfer-client has been requested.
+     */
+    protected static boolean is_deactivation_requested()
+        {
+        return deactivation_requested;
+        }
+    
+    
     /**
      * Processes the input and receipt files.
      * 
-     * @param properties The properties to be used.
-     * @param gui        The graphical user interface to be used.
+     * @param  properties The properties to be used.
+     * @param  gui        The graphical user interface to be used.
+     * @return            True if the batch has been terminated before all input files have been processed (batch size
+     *                    or time budget exhausted), i.e. if further input files may be waiting.
      */
-    public synchronized static void process(final Properties properties, final Gui gui)
+    public synchronized static boolean process(final Properties properties, final Gui gui)
         
         {
         
+        // Unterbrochene Uebertragungen werden zuerst abgeschlossen (vgl.
+        // Processing_Recovery), damit kein Input-File doppelt versendet wird.
+        Processing_Recovery.await_completion();
+        
         final String sedex_sender_id = properties.get_sedex_sender_id();
         final String dir_results     = properties.get_folder_results();
         
@@ -72,99 +104,108 @@ public class Processing
         //https://docs.oracle.com/javase/7/docs/api/java/io/File.html#listFiles()
         final File[] files           = dir.listFiles();
         
+        //Pro Taskdurchlauf wird eine beschraenkte Anzahl Files
+        //verarbeitet (BATCH_SIZE), und zwar nur so lange, bis
+        //das Zeitbudget (BATCH_TIME_BUDGET) aufgebraucht ist.
         //Damit der Executor-Thread bei der Deaktivierung
         //auch bei vielen gleichzeitigen Versandanfragen 
-        //schnell unterbrochen wird, wird neu nur noch 
-        //das erste File der Liste verarbeitet.
-        //Die Verarbeitung der folgenden Files erfolgt
+        //schnell unterbrochen wird, wird vor jedem File
+        //geprueft, ob eine Deaktivierung angefordert wurde.
+        //Die Verarbeitung der verbleibenden Files erfolgt
         //dann im folgenden Taskdurchlauf.
-        int size = files.length;
-        if (size>0)
-            {
-            size=1;
-            }
+        final int  batch_size        = properties.get_batch_size();
+        final long batch_time_budget = properties.get_batch_time_budget();
+        final long batch_start       = System.currentTimeMillis();
+        int        batch_count       = 0;
+        boolean    batch_exhausted   = false;
         
-        //for (int i = 0; i < files.length; i++)
-        for (int i = 0; i < size; i++)
+        for (int i = 0; i < files.length; i++)
             {
+            if (batch_count >= batch_size)
+                {
+                batch_exhausted = true;
+                break;
+                }
+            // Das Zeitbudget wird erst nach dem ersten File geprueft, damit
+            // jeder Durchlauf vorankommt (sonst wuerde sofort der naechste,
+            // ebenso erfolglose Durchlauf angestossen).
+            if ((batch_count > 0) && (System.currentTimeMillis() - batch_start >= batch_time_budget))
+                {
+                batch_exhausted = true;
+                break;
+                }
+            if (deactivation_requested || Thread.currentThread().isInterrupted())
+                {
+                break;
+                }
+            
             if (files[i].isDirectory())
                 {
                 // Verzeichnisse werden nicht weggeschoben
                 }
+            else if (properties.get_pipeline_zip_workers() > 0)
+                {
+                // Im Pipeline-Modus wird das File nur an die Pipeline
+                // uebergeben (vgl. Processing_Pipeline). Files, die sich
+                // bereits in der Pipeline befinden, werden uebersprungen.
+                // Ist die Pipeline voll, wird hoechstens bis zum Ende des
+                // Zeitbudgets gewartet.
+                if (Processing_Pipeline.is_in_flight(files[i]))
+                    {
+                    continue;
+                    }
+                final long remaining = batch_time_budget - (System.currentTimeMillis() - batch_start);
+                if (!Processing_Pipeline.submit(properties, gui, files[i], remaining))
+                    {
+                    batch_exhausted = true;
+                    break;
+                    }
+                batch_count++;
+                }
             else
                 {
+                batch_count++;
+                
                 final File   file             = files[i];
                 final String datafile_path    = file.getAbsolutePath();
                 final Path   path_source      = Paths.get(datafile_path);
-                final String sedex_message_id = sedex_sender_id + "-" + TimeStamp.getstamp_for_sedex_message_id();
                 
-                // Einbau eines Delays von 100 Millisekunden zur Gewährleistung,
-                // dass eine Message-ID nicht zweimal vergeben werden kann.
-                // https://docs.oracle.com/javase/tutorial/essential/concurrency/sleep.html
-                try
-                    {
-                    Thread.sleep(100);
-                    }
-                catch (Exception e)
+                // Das File wird erst verarbeitet, wenn es vom externen System
+                // fertig geschrieben ist (man denke an groessere Files >100 MB).
+                // Diese Pruefung ersetzt die fruehere Schlaufe, welche das
+                // Kopieren so lange wiederholt hat, bis es gelungen ist.
+                // Ein File, das noch nicht stabil ist, wird ohne Wartezeit
+                // uebersprungen und in einem spaeteren Durchlauf erneut
+                // geprueft, damit es die uebrigen Files und die Quittungen
+                // nicht aufhaelt.
+                if (!Processing_InputStability.is_stable(file, properties.get_stability_window()))
                     {
-                    Logger.error(e);
-                    SwingUtilities.invokeLater(new Runnable()
-                        {
-                        @Override
-                        public void run()
-                            {
-                            gui.get_dialog_fileprocessingerror().setvisible(e);
-                            }
-                        });
+                    Logger.debug("FILE NOT YET STABLE: " + path_source.toString());
+                    continue;
                     }
+                
+                // Der MessageIdGenerator gewaehrleistet, dass eine Message-ID
+                // nicht zweimal vergeben werden kann (auch nicht ueber einen
+                // Neustart hinweg). Der fruehere Delay von 100 Millisekunden
+                // ist deshalb nicht mehr notwendig.
+                final String sedex_message_id = sedex_sender_id + "-" + MessageIdGenerator.getstamp_for_sedex_message_id();
                     
                 try
                     {
                     
-                    // In der nachfolgenden Schlaufe wird so lange gewartet,
-                    // bis das File wegkopiert werden kann.
-                    // Exceptions koennen hier umso haeufiger auftreten,
-                    // je groesser die Datenfiles sind.
-                    // Wenn beispielsweise 100 MB grosse Files in den Resultateordner
-                    // geschrieben werden, kann es gut sein, dass diese noch
-                    // fuer eine laengere Zeit blockiert sind.
-                    // Diese Schlaufe wurde mit der Version 2.2 des
-                    // Transfer-Clients eingefuehrt.
-                    while (true)
-                        {
-                        try
-                            {
-                            Files.copy(file.toPath(), new File("archive/data/data_" + sedex_message_id + "_"
-                                    + file.getName()).toPath());
-                            break;
-                            }
-                        catch (Exception e)
-                            {
-                            }
-                        if (!files[i].exists())
-                            break;
-                        }
-                        
-                    // Falls die Datenfiles nicht archiviert werden sollen,
-                    // wird das File nachfolgend wieder geloescht.
-                    // Wieso wird das File nicht einfach nur dann wegkopiert,
-                    // wenn es archiviert werden soll?
-                    // Begruendung:
-                    // Durch das gewaehlte Vorgehen ist sicher gestellt,
-                    // dass bei der nachfolgenden Weiterverarbeitung das
-                    // File vom externen System fertig geschrieben ist
-                    // (man denke an groessere Files >100 MB).
-                    boolean archive_datafiles = properties.get_archive_datafiles();
-                    if (!archive_datafiles)
+                    final File source = archive(properties, file, sedex_message_id);
+                    if (source == null)
                         {
-                        Files.deleteIfExists(new File("archive/data/data_" + sedex_message_id + "_"
-                                + file.getName()).toPath());
+                        continue;
                         }
                         
                     // ------------------------------//
                     // Verarbeitung des Input-Files //
                     // ------------------------------//
-                    Processing_SingleInput.process(properties, gui, file, sedex_message_id);
+                    // Scheitert die Verarbeitung, bevor ein Empfaenger bedient
+                    // ist, legt Processing_SingleInput.process das Input-File
+                    // wieder in den Resultate-Ordner (vgl. restore_input).
+                    Processing_SingleInput.process(properties, gui, file, source, sedex_message_id);
                     
                     // ---------------------//
                     // Receipts-Processing //
@@ -209,23 +250,154 @@ public class Processing
         // nach dem Versenden aller 1000 Files.                                              //
         // ----------------------------------------------------------------------------------//
         // @formatter:on                                                                     //
+        // Falls nicht alle Quittungen verarbeitet werden konnten, wird
+        // (wie bei den Input-Files) sofort ein weiterer Durchlauf angestossen.
+        if (Processing_Receipts.process_receipts(properties, gui))
+            {
+            batch_exhausted = true;
+            }
+            
+        return batch_exhausted;
+        }
+        
+    /**
+     * Moves a stable input file from the results folder into the stage folder. The moved file is the source of the ZIP
+     * file; after the fan-out it is moved into the archive or deleted (cf. finish_archiving).
+     * 
+     * On the same volume the move is a rename (O(1)); only if the results folder lies on another volume than the
+     * Transfer-Client, the file is copied (cf. FileTransfer.move).
+     * 
+     * @param  properties       The properties to be used.
+     * @param  file             The input file.
+     * @param  sedex_message_id The sedex message id of the input file.
+     * @return                  The moved input file, or null if the input file has to be processed again later.
+     * @throws IOException      The incomplete copy cannot be deleted.
+     */
+    protected static File archive(final Properties properties, final File file, final String sedex_message_id) throws IOException
+        {
+        
+        // Das stabile File wird genau einmal aus dem Resultate-Ordner
+        // verschoben (frueher: ins Archiv kopiert, vom Original gezippt
+        // und die Kopie danach wieder geloescht, falls die Datenfiles
+        // nicht archiviert werden sollen). Das verschobene File dient
+        // als Quelle des ZIP-Files, sodass jedes File nur noch einmal
+        // gelesen und nicht mehr zusaetzlich geschrieben wird.
+        // Solange das File in Bearbeitung ist, liegt es im Stage-Ordner.
+        // Damit findet Processing_Recovery nach einem Absturz alle
+        // angefangenen Files an einem Ort.
+        final Path path_target = staged_input(sedex_message_id, file.getName());
+        
+        // Sollte das Verschieben scheitern (z.B. weil das externe System
+        // das File erneut geoeffnet hat), wird eine allfaellige
+        // unvollstaendige Kopie (Verschieben auf ein anderes Volume)
+        // entfernt und das File im naechsten Durchlauf erneut verarbeitet.
         try
             {
-            Processing_Receipts.process_receipts(properties, gui);
+            FileTransfer.move(file.toPath(), path_target);
             }
-        catch (InterruptedException | java.lang.reflect.InvocationTargetException e)
+        catch (IOException e)
             {
-            Logger.error(e);
-            SwingUtilities.invokeLater(new Runnable()
+            if (file.isFile())
                 {
-                @Override
-                public void run()
-                    {
-                    gui.get_dialog_fileprocessingerror().setvisible(e);
-                    }
-                });
+                Files.deleteIfExists(path_target);
+                }
+            Logger.debug("FILE NOT YET READABLE: " + file.getAbsolutePath());
+            return null;
+            }
+            
+        return path_target.toFile();
+        }
+        
+    /**
+     * Moves the staged input file into the archive (archive_datafiles=true) or deletes it (archive_datafiles=false).
+     * Called after the fan-out; since the stage folder and the archive lie on the same volume, the move is a rename.
+     * 
+     * @param  properties       The properties to be used.
+     * @param  sedex_message_id The sedex message id of the input file.
+     * @param  file_name        The name of the input file.
+     * @throws IOException      IO operation fails.
+     */
+    protected static void finish_archiving(final Properties properties, final String sedex_message_id, final String file_name) throws IOException
+        {
+        
+        final Path path_stage = staged_input(sedex_message_id, file_name);
+        if (properties.get_archive_datafiles())
+            {
+            FileTransfer.move(path_stage, archived_input(sedex_message_id, file_name));
+            }
+        else
+            {
+            Files.deleteIfExists(path_stage);
+            }
+            
+        }
+        
+    /**
+     * Moves a staged input file back into the results folder after its processing has failed before any recipient has
+     * been served (cf. Processing_Recovery.prepare for the same step after a crash). The ZIP file is deleted and the
+     * transfer is discarded in the journal and in the protocol; the input file is processed again under a new sedex
+     * message id.
+     * 
+     * @param properties       The properties to be used.
+     * @param gui              The GUI to be used.
+     * @param sedex_message_id The sedex message id of the input file.
+     * @param file_name        The name of the input file.
+     */
+    protected static void restore_input(final Properties properties, final Gui gui, final String sedex_message_id, final String file_name)
+        {
+        
+        // Die Zeile im Protokoll wartet sonst weiterhin auf Quittungen
+        Processing_SingleInput_GUIUpdate.discard(gui, sedex_message_id);
+        
+        try
+            {
+            Files.deleteIfExists(Paths.get("stage/data_" + sedex_message_id + ".zip"));
+            Processing_Journal.discarded(sedex_message_id);
+            
+            final Path path_stage = staged_input(sedex_message_id, file_name);
+            if (!Files.exists(path_stage))
+                {
+                return;
+                }
+                
+            // Liegt inzwischen ein neues File mit demselben Namen im
+            // Resultate-Ordner, bleibt das Input-File im Stage-Ordner
+            // und wird beim naechsten Start (wie nach einem Absturz)
+            // behandelt.
+            final Path path_results = Paths.get(properties.get_folder_results() + "/" + file_name);
+            if (Files.exists(path_results))
+                {
+                Logger.info("INPUT FILE CANNOT BE MOVED BACK (FILE EXISTS IN RESULTS FOLDER): " + path_stage.toString());
+                return;
+                }
+            FileTransfer.move(path_stage, path_results);
+            Logger.info("INPUT FILE MOVED BACK TO THE RESULTS FOLDER: " + sedex_message_id + ": " + file_name);
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
             }
             
         }
         
+    /**
+     * @param  sedex_message_id The sedex message id of the input file.
+     * @param  file_name        The name of the input file.
+     * @return                  The input file in the archive.
+     */
+    protected static Path archived_input(final String sedex_message_id, final String file_name)
+        {
+        return Paths.get("archive/data/data_" + sedex_message_id + "_" + file_name);
+        }
+        
+    /**
+     * @param  sedex_message_id The sedex message id of the input file.
+     * @param  file_name        The name of the input file.
+     * @return                  The input file in the stage folder.
+     */
+    protected static Path staged_input(final String sedex_message_id, final String file_name)
+        {
+        return Paths.get("stage/input_" + sedex_message_id + "_" + file_name);
+        }
+        
     }
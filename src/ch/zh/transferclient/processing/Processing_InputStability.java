@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is used to check whether an input file has been completely written by the external system.
+ *
+ * The check does not block: The size and the modification time of every input file which is not yet stable are
+ * remembered, and the file is skipped until they have not changed during the stability window. Thus, a file which is
+ * still being written does not delay the other input files and the receipts.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_InputStability
+    
+    {
+    
+    /** The last observation of every input file which has not been stable yet (key: absolute path). */
+    private static final ConcurrentHashMap<String, Observation> observations = new ConcurrentHashMap<String, Observation>();
+    
+    /**
+     * Constructs a Processing_InputStability object.
+     */
+    private Processing_InputStability()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Checks (without waiting) whether an input file is stable, i.e. whether its size and modification time have not
+     * changed during the stability window and no other process holds a lock on it.
+     *
+     * @param  file   The input file to be checked.
+     * @param  window The stability window in milliseconds.
+     * @return        True if the file is stable, false if it has disappeared or has to be checked again later.
+     */
+    protected static boolean is_stable(final File file, final long window)
+        {
+        
+        final String path = file.getAbsolutePath();
+        if (!file.exists())
+            {
+            observations.remove(path);
+            return false;
+            }
+            
+        final long  size     = file.length();
+        final long  modified = file.lastModified();
+        final long  now      = System.currentTimeMillis();
+        Observation last     = observations.get(path);
+        
+        if ((last == null) || (size != last.size) || (modified != last.modified))
+            {
+            last = new Observation(size, modified, now);
+            observations.put(path, last);
+            }
+            
+        // Ein File, das schon laenger als das Stabilitaetsfenster nicht mehr
+        // veraendert worden ist (der Normalfall), gilt sofort als stabil.
+        // Andernfalls muessen Groesse und Aenderungszeitpunkt seit der
+        // ersten Beobachtung waehrend des ganzen Fensters unveraendert
+        // bleiben. Bis dahin wird das File uebersprungen (statt darauf zu
+        // warten) und in einem spaeteren Durchlauf erneut geprueft.
+        final boolean quiet = (now - modified >= window) || (now - last.since >= window);
+        
+        if (quiet && is_unlocked(file))
+            {
+            observations.remove(path);
+            return true;
+            }
+            
+        return false;
+        
+        }
+        
+    /**
+     * Checks whether input files have been skipped because they were not yet stable (such files have to be checked
+     * again after the stability window even if no further watch event occurs). Observations of files which have
+     * disappeared in the meantime are removed.
+     *
+     * @return True if at least one input file is waiting to become stable.
+     */
+    public static boolean has_unstable_files()
+        {
+        final Iterator<Map.Entry<String, Observation>> iterator = observations.entrySet().iterator();
+        while (iterator.hasNext())
+            {
+            if (!new File(iterator.next().getKey()).exists())
+                {
+                iterator.remove();
+                }
+            }
+        return !observations.isEmpty();
+        }
+        
+    /**
+     * Checks whether a shared lock can be acquired on the input file. On Windows, this fails as long as the external
+     * system keeps the file open for writing.
+     *
+     * @param  file The input file to be checked.
+     * @return      True if the lock could be acquired.
+     */
+    private static boolean is_unlocked(final File file)
+        {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, true);
+            if (lock == null)
+                {
+                return false;
+                }
+            lock.release();
+            return true;
+            }
+        catch (Exception e)
+            {
+            return false;
+            }
+        }
+        
+    /**
+     * An immutable observation of an input file.
+     */
+    private static final class Observation
+        
+        {
+        
+        /** The size of the file. */
+        private final long size;
+        
+        /** The modification time of the file. */
+        private final long modified;
+        
+        /** The point of time since which size and modification time have been observed unchanged. */
+        private final long since;
+        
+        /**
+         * Constructs an Observation object.
+         *
+         * @param size     The size of the file.
+         * @param modified The modification time of the file.
+         * @param since    The point of time of the observation.
+         */
+        private Observation(final long size, final long modified, final long since)
+            {
+            this.size     = size;
+            this.modified = modified;
+            this.since    = since;
+            }
+            
+        }
+        
+    }
@@ -0,0 +1,1051 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import ch.zh.transferclient.gui.*;
+import ch.zh.transferclient.main.Conf;
+import ch.zh.transferclient.main.Logger;
+import ch.zh.transferclient.util.TimeStamp;
+
+/**
+ * This class is used to write the transfer events into a crash-safe journal and to rebuild the pending transfers from
+ * the journal at startup.
+ *
+ * The journal (archive/journal.bin) is an append-only file of compact binary records: DETECTED (input file registered),
+ * ZIPPED (ZIP file written into the stage folder), QUEUED (files placed into the sedex outbox, one record per
+ * recipient), RECEIPT (receipt taken from the sedex receipts folder) and DISCARDED (transfer which will not be
+ * completed, e.g. because its input file is processed again under a new sedex message id). Every record is framed by
+ * its length and a CRC-32, so that a record torn by a crash is recognized and ignored. The processing threads only
+ * append the records to a buffer; a background thread writes the buffer and forces it to the disk every FSYNC_INTERVAL
+ * milliseconds (group commit). Only the ZIPPED and QUEUED records, on which the recovery of an interrupted fan-out
+ * relies, wait until they have been forced to the disk; the records buffered by other threads are forced together with
+ * them. If a write fails, the journal is truncated to the last forced record and the records are written again by the
+ * next flush; if this is not possible (or fails MAX_FAILURES times in a row), the journal is marked as failed and no
+ * further records are accepted, so that no fan-out continues without its records.
+ *
+ * At startup, the journal is replayed and then compacted: it is rewritten with the records of the transfers which are
+ * still pending (i.e. for which not every recipient has sent a receipt yet, and which are not older than
+ * JOURNAL_MAX_AGE_DAYS). The journal therefore only contains the tail since the last startup, and the folders do not
+ * have to be rescanned to rebuild the state.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_Journal
+    
+    {
+    
+    /** The types of the journal records (the ordinal is written into the journal and must not be changed). */
+    private enum RecordType {
+        DETECTED, ZIPPED, QUEUED, RECEIPT, DISCARDED
+    };
+    
+    /** The journal file. */
+    private static final Path                                                JOURNAL        = Paths.get("archive/journal.bin");
+    
+    /** The temporary file used for the compaction. */
+    private static final Path                                                JOURNAL_TMP    = Paths.get("archive/journal.bin.tmp");
+    
+    /** Marker which indicates that records of the previous session may be missing (written when the journal fails). */
+    private static final Path                                                JOURNAL_FAILED = Paths.get("archive/journal.failed");
+    
+    /** Identification of the journal format ("TFJ1"). */
+    private static final int                                                 MAGIC          = 0x54464A31;
+    
+    /** Interval in milliseconds in which the buffered records are written and forced to the disk. */
+    private static final long                                                FSYNC_INTERVAL = 200;
+    
+    /** Maximum length of a record in bytes (longer lengths indicate a corrupted journal). */
+    private static final int                                                 MAX_RECORD     = 1 << 20;
+    
+    /** Number of failed writes in a row after which the journal is marked as failed. */
+    private static final int                                                 MAX_FAILURES   = 5;
+    
+    /** Lock which protects the buffer (held only briefly by the processing threads). */
+    private static final Object                                              LOCK           = new Object();
+    
+    /** Lock which keeps the order of the writes (held while writing to the disk). */
+    private static final Object                                              WRITE_LOCK     = new Object();
+    
+    /** Records which have not yet been written (protected by LOCK). */
+    private static final ByteArrayOutputStream                               pending        = new ByteArrayOutputStream();
+    
+    /** Number of the records appended to the buffer (protected by LOCK). */
+    private static long                                                      appended;
+    
+    /** Number of the records forced to the disk (written while WRITE_LOCK is held). */
+    private static volatile long                                             forced;
+    
+    /** Size of the journal file up to the last record forced to the disk (protected by WRITE_LOCK). */
+    private static long                                                      written;
+    
+    /** Number of failed writes in a row (protected by WRITE_LOCK). */
+    private static int                                                       failures;
+    
+    /** Indicates whether the journal has failed (no further records are accepted until the next start). */
+    private static volatile boolean                                          failed;
+    
+    /** Indicates whether the journal has been opened and is known to contain all records of the previous sessions. */
+    private static volatile boolean                                          complete;
+    
+    /** The pending transfers rebuilt from the journal (key: sedex message id, in the order of the detection). */
+    private static final LinkedHashMap<String, Processing_Journal_Transfer> transfers      = new LinkedHashMap<String, Processing_Journal_Transfer>();
+    
+    /** The journal file opened for appending (null as long as the journal is not open). */
+    private static volatile FileChannel                                      channel;
+    
+    /** The background thread which writes the records. */
+    private static ScheduledExecutorService                                  flusher;
+    
+    /** Indicates whether the shutdown hook has been registered. */
+    private static boolean                                                   hook_registered;
+    
+    /** The GUI in which the pending transfers have been restored (null as long as they have not been restored). */
+    private static Gui                                                       restored_gui;
+    
+    /**
+     * Constructs a Processing_Journal object.
+     */
+    private Processing_Journal()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Replays and compacts the journal and opens it for appending (called once at startup).
+     */
+    public static synchronized void open()
+        {
+        
+        if (channel != null)
+            {
+            return;
+            }
+            
+        try
+            {
+            // Ist das Journal in der vorherigen Session gescheitert, koennen
+            // Records fehlen (vgl. fail). Die Markierung gilt nur fuer den
+            // folgenden Start.
+            complete = !Files.exists(JOURNAL_FAILED);
+            replay();
+            compact();
+            channel = FileChannel.open(JOURNAL, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            synchronized (WRITE_LOCK)
+                {
+                written = channel.size();
+                }
+            Files.deleteIfExists(JOURNAL_FAILED);
+            }
+        catch (IOException e)
+            {
+            // Ohne Journal laeuft der Transfer-Client wie bisher weiter,
+            // der Zustand ueberdauert dann aber keinen Neustart.
+            Logger.error(e);
+            complete = false;
+            return;
+            }
+            
+        if (!complete)
+            {
+            Logger.info("JOURNAL INCOMPLETE: RECORDS OF THE PREVIOUS SESSION MAY BE MISSING");
+            }
+            
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+            @Override
+            public Thread newThread(Runnable runnable)
+                {
+                final Thread thread = new Thread(runnable, "TFC-Journal");
+                thread.setDaemon(true);
+                return thread;
+                }
+            });
+        flusher.scheduleWithFixedDelay(new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                flush();
+                }
+            }, FSYNC_INTERVAL, FSYNC_INTERVAL, TimeUnit.MILLISECONDS);
+            
+        // Falls die JVM beendet wird, ohne dass close() aufgerufen worden
+        // ist, werden die gepufferten Records trotzdem noch geschrieben.
+        if (!hook_registered)
+            {
+            hook_registered = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+                {
+                @Override
+                public void run()
+                    {
+                    close();
+                    }
+                }, "TFC-Journal-Shutdown"));
+            }
+            
+        Logger.info("JOURNAL OPENED: " + transfers.size() + " PENDING TRANSFER(S)");
+        
+        }
+        
+    /**
+     * Writes the buffered records and closes the journal.
+     */
+    public static synchronized void close()
+        {
+        
+        if (channel == null)
+            {
+            return;
+            }
+            
+        flusher.shutdown();
+        try
+            {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+            
+        flush();
+        
+        try
+            {
+            channel.close();
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            }
+        channel = null;
+        
+        }
+        
+    /**
+     * @return True if the journal has been opened and is known to contain all records of the previous sessions (only
+     *         then may an input file in the stage folder which is unknown to the journal be sent again).
+     */
+    public static boolean is_complete()
+        {
+        return complete;
+        }
+        
+    /**
+     * Registers the pending transfers in the protocol tables (called once after the GUI has been created).
+     *
+     * @param gui The GUI to be used.
+     */
+    public static synchronized void restore(final Gui gui)
+        {
+        
+        final TransferRegistry registry = gui.get_transfer_registry();
+        
+        // Die Uebertragungen werden in der Reihenfolge ihrer Detektion
+        // eingefuegt, die juengste steht also zuoberst.
+        for (Processing_Journal_Transfer transfer : transfers.values())
+            {
+            
+            final String                   sedex_message_id = transfer.get_sedex_message_id();
+            final TransferRegistry_Message message          = registry.register(sedex_message_id.substring(20, 22) + ":"
+                    + sedex_message_id.substring(22, 24), transfer.get_file_name(), sedex_message_id,
+                    new ArrayList<String>(transfer.get_sedex_recipient_ids()),
+                    new ArrayList<String>(transfer.get_sedex_recipient_labels()));
+                    
+            for (int j = 0; j < message.get_recipients().size(); j++)
+                {
+                if (transfer.get_status_info(j) != null)
+                    {
+                    message.get_recipients().get(j).apply_receipt(transfer.get_status_info(j), transfer.is_successful(j));
+                    }
+                }
+                
+            gui.get_protocol_coalescer().publish_inserted(message);
+            
+            }
+            
+        restored_gui = gui;
+        Logger.info("JOURNAL RESTORED: " + transfers.size() + " PENDING TRANSFER(S) REGISTERED IN THE PROTOCOL");
+        
+        }
+        
+    /**
+     * @return The pending transfers rebuilt from the journal (in the order of the detection).
+     */
+    public static synchronized List<Processing_Journal_Transfer> get_pending_transfers()
+        {
+        return new ArrayList<Processing_Journal_Transfer>(transfers.values());
+        }
+        
+    /**
+     * Removes a pending transfer which will not be completed (it is neither restored nor kept after the next startup).
+     *
+     * @param sedex_message_id The sedex message id.
+     */
+    protected static synchronized void discarded(final String sedex_message_id)
+        {
+        
+        // Der Record wird auch fuer Uebertragungen der laufenden Sitzung
+        // geschrieben (diese sind nur im Journal, nicht in transfers).
+        transfers.remove(sedex_message_id);
+        
+        try
+            {
+            append(encode_discarded(System.currentTimeMillis(), sedex_message_id));
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            }
+            
+        }
+        
+    /**
+     * Evaluates a receipt found in the sedex receipts folder at startup: if the receipt belongs to a pending transfer,
+     * it is applied to the transfer and journaled (before the receipt file is moved to the archive). May be called by
+     * several threads; if the pending transfers have already been restored, the receipt is also applied to the
+     * protocol.
+     *
+     * @param  file The receipt file.
+     * @return      True if the receipt belongs to a pending transfer.
+     */
+    public static boolean apply_old_receipt(final File file)
+        {
+        
+        // Das Lesen der Quittung erfolgt ausserhalb der Sperre, damit
+        // mehrere Threads gleichzeitig Quittungen auswerten koennen.
+        final Processing_Receipts_Record receipt;
+        try
+            {
+            receipt = Processing_Receipts_ExtractElements.extract(file);
+            }
+        catch (Exception e)
+            {
+            // Quittungen, die nicht gelesen werden koennen, werden wie
+            // bisher ohne Auswertung archiviert.
+            return false;
+            }
+            
+        return apply_old_receipt(receipt);
+        
+        }
+        
+    /**
+     * Applies a receipt found in the sedex receipts folder at startup to its pending transfer.
+     *
+     * @param  receipt The receipt.
+     * @return         True if the receipt belongs to a pending transfer.
+     */
+    private static synchronized boolean apply_old_receipt(final Processing_Receipts_Record receipt)
+        {
+        
+        final Processing_Journal_Transfer transfer = transfers.get(receipt.get_sedex_message_id_trimmed());
+        if (transfer == null)
+            {
+            return false;
+            }
+            
+        receipt(receipt.get_sedex_message_id(), receipt.get_status_info());
+        
+        final int recipient = recipient_index(receipt.get_sedex_message_id());
+        if ((recipient >= 0) && (recipient < transfer.get_sedex_recipient_ids().size()))
+            {
+            transfer.apply_receipt(recipient, receipt.get_status_info(), is_successful(receipt.get_status_info()));
+            }
+            
+        // Falls das GUI bereits laeuft (das Archivieren der alten Quittungen
+        // wird im Hintergrund fortgesetzt), wird auch das Protokoll aktualisiert.
+        if (restored_gui != null)
+            {
+            final TransferRegistry_Recipient entry = restored_gui.get_transfer_registry().get_recipient(receipt.get_sedex_message_id());
+            if (entry != null)
+                {
+                entry.apply_receipt(receipt.get_status_info(), is_successful(receipt.get_status_info()));
+                restored_gui.get_protocol_coalescer().publish_changed(entry);
+                }
+            }
+            
+        return true;
+        
+        }
+        
+    /**
+     * Journals the detection of an input file.
+     *
+     * @param sedex_message_id       The sedex message id.
+     * @param file_name              The name of the input file.
+     * @param sedex_recipient_ids    The sedex recipient ids.
+     * @param sedex_recipient_labels The labels of the sedex recipients.
+     */
+    protected static void detected(final String sedex_message_id, final String file_name, final List<String> sedex_recipient_ids, final List<String> sedex_recipient_labels)
+        {
+        try
+            {
+            append(encode_detected(System.currentTimeMillis(), sedex_message_id, file_name, sedex_recipient_ids, sedex_recipient_labels));
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            }
+        }
+        
+    /**
+     * Journals that the ZIP file has been written into the stage folder (returns after the record has been forced to
+     * the disk).
+     *
+     * @param  sedex_message_id The sedex message id.
+     * @throws IOException      The record could not be forced to the disk (the fan-out must not be started).
+     */
+    protected static void zipped(final String sedex_message_id) throws IOException
+        {
+        append_forced(encode_zipped(System.currentTimeMillis(), sedex_message_id));
+        }
+        
+    /**
+     * Journals that the files have been placed into the sedex outbox for a recipient (returns after the record has been
+     * forced to the disk).
+     *
+     * @param  sedex_message_id The sedex message id.
+     * @param  recipient        The index of the recipient.
+     * @throws IOException      The record could not be forced to the disk (the fan-out must not be continued).
+     */
+    protected static void queued(final String sedex_message_id, final int recipient) throws IOException
+        {
+        append_forced(encode_queued(System.currentTimeMillis(), sedex_message_id, recipient));
+        }
+        
+    /**
+     * Journals a receipt which has been taken from the sedex receipts folder.
+     *
+     * @param sedex_message_id The sedex message id incl. recipient suffix (e.g. "-E0").
+     * @param status_info      The status info of the receipt.
+     */
+    protected static void receipt(final String sedex_message_id, final String status_info)
+        {
+        
+        final int recipient = recipient_index(sedex_message_id);
+        if (recipient < 0)
+            {
+            return;
+            }
+            
+        try
+            {
+            append(encode_receipt(System.currentTimeMillis(), sedex_message_id.substring(0, sedex_message_id.lastIndexOf("-E")),
+                    recipient, status_info, is_successful(status_info)));
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            }
+            
+        }
+        
+    /**
+     * Appends a record to the buffer (it is written by the background thread).
+     *
+     * @param  record      The framed record.
+     * @return             The number of the record (cf. sync).
+     * @throws IOException The journal is not open (the record is not written).
+     */
+    private static long append(final byte[] record) throws IOException
+        {
+        if (failed)
+            {
+            throw new IOException("Journal has failed, record not written: " + JOURNAL);
+            }
+        if (channel == null)
+            {
+            throw new IOException("Journal is not open, record not written: " + JOURNAL);
+            }
+        synchronized (LOCK)
+            {
+            pending.write(record, 0, record.length);
+            return ++appended;
+            }
+        }
+        
+    /**
+     * Appends a record and waits until it has been forced to the disk.
+     *
+     * @param  record      The framed record.
+     * @throws IOException The record could not be forced to the disk.
+     */
+    private static void append_forced(final byte[] record) throws IOException
+        {
+        
+        // Konnte das Journal beim Start nicht geoeffnet werden, laeuft der
+        // Transfer-Client wie bisher ohne Journal weiter (vgl. open): Der
+        // Record wird dann nur als Fehler protokolliert.
+        if ((channel == null) && !failed)
+            {
+            Logger.error(new IOException("Journal is not open, record not written: " + JOURNAL));
+            return;
+            }
+            
+        sync(append(record));
+        
+        }
+        
+    /**
+     * Waits until a record has been forced to the disk. If the background thread has not yet written it, the buffer is
+     * written by the calling thread.
+     *
+     * @param  sequence    The number of the record (cf. append).
+     * @throws IOException The record could not be written.
+     */
+    private static void sync(final long sequence) throws IOException
+        {
+        if (forced >= sequence)
+            {
+            return;
+            }
+        flush();
+        if (failed || (forced < sequence))
+            {
+            throw new IOException("Journal record could not be forced to the disk: " + JOURNAL);
+            }
+        }
+        
+    /**
+     * Writes the buffered records and forces them to the disk (background thread and close()).
+     */
+    private static void flush()
+        {
+        
+        synchronized (WRITE_LOCK)
+            {
+            
+            final byte[] records;
+            final long   last;
+            synchronized (LOCK)
+                {
+                if (pending.size() == 0)
+                    {
+                    return;
+                    }
+                records = pending.toByteArray();
+                last    = appended;
+                pending.reset();
+                }
+                
+            final FileChannel current_channel = channel;
+            if (current_channel == null)
+                {
+                return;
+                }
+                
+            try
+                {
+                final ByteBuffer buffer = ByteBuffer.wrap(records);
+                while (buffer.hasRemaining())
+                    {
+                    current_channel.write(buffer);
+                    }
+                current_channel.force(false);
+                written  = written + records.length;
+                forced   = last;
+                failures = 0;
+                }
+            catch (IOException e)
+                {
+                Logger.error(e);
+                retry(current_channel, records);
+                }
+                
+            }
+            
+        }
+        
+    /**
+     * Undoes a failed write: the journal is truncated to the last forced record and the records are put back at the
+     * beginning of the buffer, so that they are written again by the next flush (called while WRITE_LOCK is held).
+     *
+     * @param current_channel The journal file.
+     * @param records         The records whose write has failed.
+     */
+    private static void retry(final FileChannel current_channel, final byte[] records)
+        {
+        
+        // Ein teilweise geschriebener Record darf nicht im Journal bleiben:
+        // Beim Einlesen endet replay() beim ersten beschaedigten Record,
+        // alle spaeter angehaengten Records gingen damit verloren.
+        failures++;
+        try
+            {
+            current_channel.truncate(written);
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            fail();
+            return;
+            }
+        if (failures >= MAX_FAILURES)
+            {
+            fail();
+            return;
+            }
+            
+        synchronized (LOCK)
+            {
+            final byte[] newer = pending.toByteArray();
+            pending.reset();
+            pending.write(records, 0, records.length);
+            pending.write(newer, 0, newer.length);
+            }
+            
+        }
+        
+    /**
+     * Marks the journal as failed: the buffered records are dropped and no further records are accepted.
+     */
+    private static void fail()
+        {
+        failed = true;
+        synchronized (LOCK)
+            {
+            pending.reset();
+            }
+        Logger.info("JOURNAL FAILED: NO FURTHER RECORDS ARE ACCEPTED UNTIL THE NEXT START");
+        
+        // Beim naechsten Start darf sich Processing_Recovery nicht auf die
+        // Vollstaendigkeit des Journals verlassen.
+        try
+            {
+            Files.write(JOURNAL_FAILED, new byte[0]);
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            }
+        }
+        
+    /**
+     * Replays the journal: the pending transfers are rebuilt from the records.
+     *
+     * @throws IOException IO operation fails.
+     */
+    private static void replay() throws IOException
+        {
+        
+        transfers.clear();
+        
+        if (!Files.exists(JOURNAL))
+            {
+            return;
+            }
+            
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(JOURNAL))))
+            {
+            
+            if (in.readInt() != MAGIC)
+                {
+                throw new IOException("Unknown journal format: " + JOURNAL);
+                }
+                
+            while (true)
+                {
+                
+                final int length;
+                try
+                    {
+                    length = in.readInt();
+                    }
+                catch (EOFException e)
+                    {
+                    break;
+                    }
+                    
+                // Ein unvollstaendiger oder beschaedigter Record kann nur am
+                // Ende des Journals stehen (Absturz waehrend des Schreibens):
+                // Das Einlesen wird dort beendet. Folgen ihm noch Daten, sind
+                // Records verloren und das Journal ist nicht vollstaendig.
+                if ((length <= 0) || (length > MAX_RECORD))
+                    {
+                    Logger.info("JOURNAL: CORRUPTED RECORD IGNORED AFTER " + records + " RECORD(S)");
+                    check_tail(in);
+                    break;
+                    }
+                final int    crc     = in.readInt();
+                final byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (crc32(payload) != crc)
+                    {
+                    Logger.info("JOURNAL: CORRUPTED RECORD IGNORED AFTER " + records + " RECORD(S)");
+                    check_tail(in);
+                    break;
+                    }
+                    
+                apply(payload);
+                records++;
+                
+                }
+                
+            }
+        catch (EOFException e)
+            {
+            Logger.info("JOURNAL: INCOMPLETE RECORD IGNORED AFTER " + records + " RECORD(S)");
+            }
+        catch (IOException e)
+            {
+            // Das unlesbare Journal wird zur Analyse aufbewahrt.
+            Logger.error(e);
+            final Path backup = Paths.get("archive/journal_" + TimeStamp.getstamp_for_logfile() + ".bin.corrupt");
+            Files.move(JOURNAL, backup);
+            Logger.info("JOURNAL MOVED TO: " + backup.toString());
+            transfers.clear();
+            complete = false;
+            return;
+            }
+            
+        // Abgeschlossene und zu alte Uebertragungen werden nicht mehr gefuehrt.
+        final long                                  limit    = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Conf.JOURNAL_MAX_AGE_DAYS);
+        final Iterator<Processing_Journal_Transfer> iterator = transfers.values().iterator();
+        while (iterator.hasNext())
+            {
+            final Processing_Journal_Transfer transfer = iterator.next();
+            if (transfer.is_resolved() || (transfer.get_detected() < limit))
+                {
+                iterator.remove();
+                }
+            }
+            
+        Logger.info("JOURNAL REPLAYED: " + records + " RECORD(S), " + transfers.size() + " PENDING TRANSFER(S)");
+        
+        }
+        
+    /**
+     * Checks the rest of the journal after a corrupted record: a record torn by a crash is followed by nothing (or by
+     * the zeros of a preallocated block). Any other data means that records have been lost, so the journal is marked as
+     * incomplete.
+     *
+     * @param  in          The journal positioned after the corrupted record.
+     * @throws IOException IO operation fails.
+     */
+    private static void check_tail(final DataInputStream in) throws IOException
+        {
+        int b;
+        while ((b = in.read()) != -1)
+            {
+            if (b != 0)
+                {
+                complete = false;
+                Logger.info("JOURNAL: RECORDS FOLLOWING THE CORRUPTED RECORD HAVE BEEN LOST");
+                return;
+                }
+            }
+        }
+        
+    /**
+     * Applies a record to the pending transfers.
+     *
+     * @param  payload     The payload of the record.
+     * @throws IOException The payload cannot be decoded.
+     */
+    private static void apply(final byte[] payload) throws IOException
+        {
+        
+        final DataInputStream in      = new DataInputStream(new ByteArrayInputStream(payload));
+        final int             ordinal = in.readUnsignedByte();
+        if (ordinal >= RecordType.values().length)
+            {
+            return;
+            }
+        final RecordType type             = RecordType.values()[ordinal];
+        final long       millis           = in.readLong();
+        final String     sedex_message_id = in.readUTF();
+        
+        if (type == RecordType.DETECTED)
+            {
+            final String            file_name = in.readUTF();
+            final int               size      = in.readUnsignedShort();
+            final ArrayList<String> ids       = new ArrayList<String>(size);
+            final ArrayList<String> labels    = new ArrayList<String>(size);
+            for (int j = 0; j < size; j++)
+                {
+                ids.add(in.readUTF());
+                labels.add(in.readUTF());
+                }
+            transfers.put(sedex_message_id, new Processing_Journal_Transfer(sedex_message_id, millis, file_name, ids, labels));
+            return;
+            }
+            
+        // Records zu unbekannten (z.B. bereits abgeschlossenen) Uebertragungen
+        // werden ignoriert.
+        final Processing_Journal_Transfer transfer = transfers.get(sedex_message_id);
+        if (transfer == null)
+            {
+            return;
+            }
+            
+        if (type == RecordType.ZIPPED)
+            {
+            transfer.set_zipped();
+            return;
+            }
+        if (type == RecordType.DISCARDED)
+            {
+            transfers.remove(sedex_message_id);
+            return;
+            }
+            
+        final int recipient = in.readUnsignedShort();
+        if (recipient >= transfer.get_sedex_recipient_ids().size())
+            {
+            return;
+            }
+        if (type == RecordType.QUEUED)
+            {
+            transfer.set_queued(recipient);
+            }
+        else
+            {
+            final boolean successful = in.readBoolean();
+            transfer.apply_receipt(recipient, in.readUTF(), successful);
+            }
+            
+        }
+        
+    /**
+     * Compacts the journal: it is replaced by a journal containing only the records of the pending transfers.
+     *
+     * @throws IOException IO operation fails.
+     */
+    private static void compact() throws IOException
+        {
+        
+        try (FileOutputStream fos = new FileOutputStream(JOURNAL_TMP.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos)))
+            {
+            
+            out.writeInt(MAGIC);
+            
+            for (Processing_Journal_Transfer transfer : transfers.values())
+                {
+                final String sedex_message_id = transfer.get_sedex_message_id();
+                final long   millis           = transfer.get_detected();
+                out.write(encode_detected(millis, sedex_message_id, transfer.get_file_name(), transfer.get_sedex_recipient_ids(),
+                        transfer.get_sedex_recipient_labels()));
+                if (transfer.is_zipped())
+                    {
+                    out.write(encode_zipped(millis, sedex_message_id));
+                    }
+                for (int j = 0; j < transfer.get_sedex_recipient_ids().size(); j++)
+                    {
+                    if (transfer.is_queued(j))
+                        {
+                        out.write(encode_queued(millis, sedex_message_id, j));
+                        }
+                    if (transfer.get_status_info(j) != null)
+                        {
+                        out.write(encode_receipt(millis, sedex_message_id, j, transfer.get_status_info(j), transfer.is_successful(j)));
+                        }
+                    }
+                }
+                
+            out.flush();
+            fos.getFD().sync();
+            
+            }
+            
+        // Erst das vollstaendig geschriebene Journal ersetzt das bisherige.
+        Files.move(JOURNAL_TMP, JOURNAL, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        }
+        
+    /**
+     * Encodes a DETECTED record.
+     *
+     * @param  millis                 Point of time in milliseconds.
+     * @param  sedex_message_id       The sedex message id.
+     * @param  file_name              The name of the input file.
+     * @param  sedex_recipient_ids    The sedex recipient ids.
+     * @param  sedex_recipient_labels The labels of the sedex recipients.
+     * @return                        The framed record.
+     * @throws IOException            The record cannot be encoded.
+     */
+    private static byte[] encode_detected(final long millis, final String sedex_message_id, final String file_name, final List<String> sedex_recipient_ids, final List<String> sedex_recipient_labels) throws IOException
+        {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        final DataOutputStream      out   = header(bytes, RecordType.DETECTED, millis, sedex_message_id);
+        out.writeUTF(file_name);
+        out.writeShort(sedex_recipient_ids.size());
+        for (int j = 0; j < sedex_recipient_ids.size(); j++)
+            {
+            out.writeUTF(sedex_recipient_ids.get(j));
+            out.writeUTF(sedex_recipient_labels.get(j));
+            }
+        return frame(bytes);
+        }
+        
+    /**
+     * Encodes a ZIPPED record.
+     *
+     * @param  millis           Point of time in milliseconds.
+     * @param  sedex_message_id The sedex message id.
+     * @return                  The framed record.
+     * @throws IOException      The record cannot be encoded.
+     */
+    private static byte[] encode_zipped(final long millis, final String sedex_message_id) throws IOException
+        {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        header(bytes, RecordType.ZIPPED, millis, sedex_message_id);
+        return frame(bytes);
+        }
+        
+    /**
+     * Encodes a DISCARDED record.
+     *
+     * @param  millis           Point of time in milliseconds.
+     * @param  sedex_message_id The sedex message id.
+     * @return                  The framed record.
+     * @throws IOException      The record cannot be encoded.
+     */
+    private static byte[] encode_discarded(final long millis, final String sedex_message_id) throws IOException
+        {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        header(bytes, RecordType.DISCARDED, millis, sedex_message_id);
+        return frame(bytes);
+        }
+        
+    /**
+     * Encodes a QUEUED record.
+     *
+     * @param  millis           Point of time in milliseconds.
+     * @param  sedex_message_id The sedex message id.
+     * @param  recipient        The index of the recipient.
+     * @return                  The framed record.
+     * @throws IOException      The record cannot be encoded.
+     */
+    private static byte[] encode_queued(final long millis, final String sedex_message_id, final int recipient) throws IOException
+        {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        header(bytes, RecordType.QUEUED, millis, sedex_message_id).writeShort(recipient);
+        return frame(bytes);
+        }
+        
+    /**
+     * Encodes a RECEIPT record.
+     *
+     * @param  millis           Point of time in milliseconds.
+     * @param  sedex_message_id The sedex message id (without the recipient suffix).
+     * @param  recipient        The index of the recipient.
+     * @param  status_info      The status info of the receipt.
+     * @param  successful       Indicator which indicates whether the receipt confirms a successful transmission.
+     * @return                  The framed record.
+     * @throws IOException      The record cannot be encoded.
+     */
+    private static byte[] encode_receipt(final long millis, final String sedex_message_id, final int recipient, final String status_info, final boolean successful) throws IOException
+        {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        final DataOutputStream      out   = header(bytes, RecordType.RECEIPT, millis, sedex_message_id);
+        out.writeShort(recipient);
+        out.writeBoolean(successful);
+        out.writeUTF(status_info);
+        return frame(bytes);
+        }
+        
+    /**
+     * Writes the header of a record (type, point of time and sedex message id).
+     *
+     * @param  bytes            The stream of the payload.
+     * @param  type             The type of the record.
+     * @param  millis           Point of time in milliseconds.
+     * @param  sedex_message_id The sedex message id.
+     * @return                  The stream to which the remaining fields can be written.
+     * @throws IOException      The header cannot be encoded.
+     */
+    private static DataOutputStream header(final ByteArrayOutputStream bytes, final RecordType type, final long millis, final String sedex_message_id) throws IOException
+        {
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type.ordinal());
+        out.writeLong(millis);
+        out.writeUTF(sedex_message_id);
+        return out;
+        }
+        
+    /**
+     * Frames a payload with its length and its CRC-32.
+     *
+     * @param  bytes The stream of the payload.
+     * @return       The framed record.
+     */
+    private static byte[] frame(final ByteArrayOutputStream bytes)
+        {
+        final byte[] payload = bytes.toByteArray();
+        return ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt(crc32(payload)).put(payload).array();
+        }
+        
+    /**
+     * @param  bytes The bytes.
+     * @return       The CRC-32 of the bytes.
+     */
+    private static int crc32(final byte[] bytes)
+        {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+        }
+        
+    /**
+     * @param  sedex_message_id The sedex message id incl. recipient suffix (e.g. "-E0").
+     * @return                  The index of the recipient (-1 if the suffix is missing or invalid).
+     */
+    private static int recipient_index(final String sedex_message_id)
+        {
+        try
+            {
+            return Integer.parseInt(sedex_message_id.substring(sedex_message_id.lastIndexOf("-E") + 2));
+            }
+        catch (RuntimeException e)
+            {
+            return -1;
+            }
+        }
+        
+    /**
+     * @param  status_info The status info of a receipt.
+     * @return             True if the receipt confirms a successful transmission (as in the protocol tables).
+     */
+    private static boolean is_successful(final String status_info)
+        {
+        return status_info.contains("successfully");
+        }
+        
+    }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is used to keep the state of a transfer which has been rebuilt from the journal (cf. Processing_Journal).
+ *
+ * The state of the recipients is read and updated by several threads (recovery of the interrupted fan-outs, archiving of
+ * the old receipts); the methods which access it are therefore synchronized.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_Journal_Transfer
+    
+    {
+    
+    /** The sedex message id (without the recipient suffix, e.g. "-E0"). */
+    private final String       sedex_message_id;
+    
+    /** Point of time (in milliseconds) at which the input file has been detected. */
+    private final long         detected;
+    
+    /** The name of the input file. */
+    private final String       file_name;
+    
+    /** The sedex recipient ids (in the order of the recipients in the properties file). */
+    private final List<String> sedex_recipient_ids;
+    
+    /** The labels of the sedex recipients. */
+    private final List<String> sedex_recipient_labels;
+    
+    /** Indicator which indicates whether the ZIP file has been written into the stage folder. */
+    private boolean            zipped;
+    
+    /** Indicators which indicate whether the files have been placed into the sedex outbox (per recipient). */
+    private final boolean[]    queued;
+    
+    /** The status info of the last receipt (per recipient, null as long as no receipt has arrived). */
+    private final String[]     status_info;
+    
+    /** Indicators which indicate whether the transmission has been confirmed successfully (per recipient). */
+    private final boolean[]    successful;
+    
+    /**
+     * Constructs a Processing_Journal_Transfer object.
+     *
+     * @param sedex_message_id       The sedex message id (without the recipient suffix, e.g. "-E0").
+     * @param detected               Point of time (in milliseconds) at which the input file has been detected.
+     * @param file_name              The name of the input file.
+     * @param sedex_recipient_ids    The sedex recipient ids.
+     * @param sedex_recipient_labels The labels of the sedex recipients.
+     */
+    protected Processing_Journal_Transfer
+    /* @formatter:off */
+        (
+        final String       sedex_message_id,
+        final long         detected,
+        final String       file_name,
+        final List<String> sedex_recipient_ids,
+        final List<String> sedex_recipient_labels
+        )
+    /* @formatter:on */
+        {
+        this.sedex_message_id       = sedex_message_id;
+        this.detected               = detected;
+        this.file_name              = file_name;
+        this.sedex_recipient_ids    = Collections.unmodifiableList(new ArrayList<String>(sedex_recipient_ids));
+        this.sedex_recipient_labels = Collections.unmodifiableList(new ArrayList<String>(sedex_recipient_labels));
+        this.queued                 = new boolean[sedex_recipient_ids.size()];
+        this.status_info            = new String[sedex_recipient_ids.size()];
+        this.successful             = new boolean[sedex_recipient_ids.size()];
+        }
+        
+    /**
+     * @return The sedex message id (without the recipient suffix, e.g. "-E0").
+     */
+    public String get_sedex_message_id()
+        {
+        return this.sedex_message_id;
+        }
+        
+    /**
+     * @return Point of time (in milliseconds) at which the input file has been detected.
+     */
+    public long get_detected()
+        {
+        return this.detected;
+        }
+        
+    /**
+     * @return The name of the input file.
+     */
+    public String get_file_name()
+        {
+        return this.file_name;
+        }
+        
+    /**
+     * @return The sedex recipient ids (in the order of the recipients in the properties file).
+     */
+    public List<String> get_sedex_recipient_ids()
+        {
+        return this.sedex_recipient_ids;
+        }
+        
+    /**
+     * @return The labels of the sedex recipients.
+     */
+    public List<String> get_sedex_recipient_labels()
+        {
+        return this.sedex_recipient_labels;
+        }
+        
+    /**
+     * @return True if the ZIP file has been written into the stage folder.
+     */
+    public synchronized boolean is_zipped()
+        {
+        return this.zipped;
+        }
+        
+    /**
+     * @param  recipient The index of the recipient.
+     * @return           True if the files have been placed into the sedex outbox for the recipient.
+     */
+    public synchronized boolean is_queued(final int recipient)
+        {
+        return this.queued[recipient];
+        }
+        
+    /**
+     * @param  recipient The index of the recipient.
+     * @return           The status info of the last receipt of the recipient (null as long as no receipt has arrived).
+     */
+    public synchronized String get_status_info(final int recipient)
+        {
+        return this.status_info[recipient];
+        }
+        
+    /**
+     * @param  recipient The index of the recipient.
+     * @return           True if the transmission to the recipient has been confirmed successfully.
+     */
+    public synchronized boolean is_successful(final int recipient)
+        {
+        return this.successful[recipient];
+        }
+        
+    /**
+     * @return True if a receipt has arrived for every recipient, i.e. if the transfer is no longer pending.
+     */
+    public synchronized boolean is_resolved()
+        {
+        for (String status : this.status_info)
+            {
+            if (status == null)
+                {
+                return false;
+                }
+            }
+        return true;
+        }
+        
+    /**
+     * Marks the ZIP file as written.
+     */
+    protected synchronized void set_zipped()
+        {
+        this.zipped = true;
+        }
+        
+    /**
+     * Marks the files of a recipient as placed into the sedex outbox.
+     *
+     * @param recipient The index of the recipient.
+     */
+    protected synchronized void set_queued(final int recipient)
+        {
+        this.queued[recipient] = true;
+        }
+        
+    /**
+     * Applies a receipt.
+     *
+     * @param recipient   The index of the recipient.
+     * @param status_info The status info of the receipt.
+     * @param successful  Indicator which indicates whether the receipt confirms a successful transmission.
+     */
+    protected synchronized void apply_receipt(final int recipient, final String status_info, final boolean successful)
+        {
+        this.status_info[recipient] = status_info;
+        
+        // Eine erfolgreiche Uebertragung bleibt erfolgreich (vgl. TransferRegistry_Recipient)
+        this.successful[recipient]  = this.successful[recipient] || successful;
+        }
+        
+    }
@@ -0,0 +1,579 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import ch.zh.transferclient.gui.Gui;
+import ch.zh.transferclient.main.Logger;
+import ch.zh.transferclient.properties.Properties;
+import ch.zh.transferclient.util.MessageIdGenerator;
+
+/**
+ * This class is used to process the input files in a staged pipeline (if PIPELINE_ZIP_WORKERS is greater than 0).
+ *
+ * The input files detected by Processing.process pass through the following stages, each of which has its own bounded
+ * queue and its own worker threads:
+ * <ol>
+ * <li>Stabilise: waiting until the file has been completely written by the external system.</li>
+ * <li>Archive: assignment of the sedex message id, move to the stage folder and registration in the GUI.</li>
+ * <li>Zip: writing of the ZIP file into the stage folder (several workers).</li>
+ * <li>Fan-out: placing of the data files and envelopes into the sedex outbox and archiving of the input file.</li>
+ * </ol>
+ * Thus, the ZIP file of one input file can be written while the previous input file is moved to the outbox. The
+ * archive and the fan-out stage have a single worker each, so that the input files reach the outbox in the order in
+ * which they have been archived, and the data file of every recipient is still moved before the envelope.
+ *
+ * When the transfer-client is exited, the pipeline is shut down (cf. shutdown): the input files which have not yet
+ * been archived remain in the results folder, the archived input files are processed to the end.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_Pipeline
+    
+    {
+    
+    /** Capacity of the queue of every stage. */
+    private static final int                 QUEUE_CAPACITY    = 16;
+    
+    /** Number of workers of the stabilise stage. */
+    private static final int                 STABILISE_WORKERS = 2;
+    
+    /** Queue of the stabilise stage. */
+    private static final BlockingQueue<Job>  stabilise_queue   = new ArrayBlockingQueue<Job>(QUEUE_CAPACITY);
+    
+    /** Queue of the archive stage. */
+    private static final BlockingQueue<Job>  archive_queue     = new ArrayBlockingQueue<Job>(QUEUE_CAPACITY);
+    
+    /** Queue of the zip stage. */
+    private static final BlockingQueue<Job>  zip_queue         = new ArrayBlockingQueue<Job>(QUEUE_CAPACITY);
+    
+    /** Queue of the fan-out stage (in the order of the archive stage). */
+    private static final BlockingQueue<Job>  fanout_queue      = new ArrayBlockingQueue<Job>(QUEUE_CAPACITY);
+    
+    /** Absolute paths of the input files which are currently in the pipeline. */
+    private static final Set<String>         in_flight         = ConcurrentHashMap.newKeySet();
+    
+    /** Marker which terminates the worker which takes it from its queue (cf. shutdown). */
+    private static final Job                 STOP              = new Job();
+    
+    /** The worker threads of the stages (in the order of the stages). */
+    private static final List<List<Thread>>  workers           = new ArrayList<List<Thread>>();
+    
+    /** Indicator which indicates whether the worker threads have been started. */
+    private static boolean                   started           = false;
+    
+    /** Indicator which indicates whether the pipeline has been shut down (it is not started again). */
+    private static volatile boolean          shut_down         = false;
+    
+    /**
+     * Constructs a Processing_Pipeline object.
+     */
+    private Processing_Pipeline()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Checks whether an input file is currently in the pipeline.
+     *
+     * @param  file The input file.
+     * @return      True if the input file is in the pipeline (and must not be submitted again).
+     */
+    protected static boolean is_in_flight(final File file)
+        {
+        return in_flight.contains(file.getAbsolutePath());
+        }
+        
+    /**
+     * Submits an input file to the pipeline.
+     *
+     * @param  properties The properties to be used.
+     * @param  gui        The graphical user interface to be used.
+     * @param  file       The input file.
+     * @param  timeout    Maximum waiting time in milliseconds if the queue of the first stage is full.
+     * @return            False if the input file could not be submitted within the waiting time.
+     */
+    protected static boolean submit(final Properties properties, final Gui gui, final File file, final long timeout)
+        {
+        
+        if (!start(properties.get_pipeline_zip_workers()))
+            {
+            return false;
+            }
+            
+        final Job job = new Job(properties, gui, file);
+        if (!in_flight.add(job.path))
+            {
+            return true;
+            }
+            
+        try
+            {
+            if (stabilise_queue.offer(job, Math.max(0, timeout), TimeUnit.MILLISECONDS))
+                {
+                return true;
+                }
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+            
+        in_flight.remove(job.path);
+        return false;
+        
+        }
+        
+    /**
+     * Starts the worker threads (only once, they remain alive until the pipeline is shut down).
+     *
+     * @param  zip_workers Number of workers of the zip stage.
+     * @return             False if the pipeline has already been shut down.
+     */
+    private static synchronized boolean start(final int zip_workers)
+        {
+        
+        if (shut_down)
+            {
+            return false;
+            }
+        if (started)
+            {
+            return true;
+            }
+        started = true;
+        
+        final List<Thread> stabilise_workers = new ArrayList<Thread>();
+        for (int i = 0; i < STABILISE_WORKERS; i++)
+            {
+            start_worker(stabilise_workers, "TFC-Pipeline-Stabilise-" + i, new Runnable()
+                {
+                @Override
+                public void run()
+                    {
+                    stabilise();
+                    }
+                });
+            }
+        workers.add(stabilise_workers);
+        
+        final List<Thread> archive_workers = new ArrayList<Thread>();
+        start_worker(archive_workers, "TFC-Pipeline-Archive", new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                archive();
+                }
+            });
+        workers.add(archive_workers);
+        
+        final List<Thread> zip_stage_workers = new ArrayList<Thread>();
+        for (int i = 0; i < zip_workers; i++)
+            {
+            start_worker(zip_stage_workers, "TFC-Pipeline-Zip-" + i, new Runnable()
+                {
+                @Override
+                public void run()
+                    {
+                    zip();
+                    }
+                });
+            }
+        workers.add(zip_stage_workers);
+        
+        final List<Thread> fanout_workers = new ArrayList<Thread>();
+        start_worker(fanout_workers, "TFC-Pipeline-FanOut", new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                fan_out();
+                }
+            });
+        workers.add(fanout_workers);
+        
+        return true;
+        
+        }
+        
+    /**
+     * Starts a single worker thread.
+     *
+     * @param stage_workers The worker threads of the stage (the new thread is added).
+     * @param name          The name of the thread.
+     * @param worker        The loop of the worker.
+     */
+    private static void start_worker(final List<Thread> stage_workers, final String name, final Runnable worker)
+        {
+        Thread thread = new Thread(worker, name);
+        thread.setDaemon(true);
+        thread.start();
+        stage_workers.add(thread);
+        }
+        
+    /**
+     * Shuts the pipeline down and waits until its workers have terminated (called when the transfer-client is exited,
+     * before the journal is closed).
+     *
+     * The input files in the stabilise and archive queue are dropped (they are still in the results folder and are
+     * processed after the next start). The input files which have already been archived are zipped and placed into
+     * the sedex outbox before the workers terminate.
+     */
+    public static synchronized void shutdown()
+        {
+        
+        shut_down = true;
+        if (!started)
+            {
+            return;
+            }
+            
+        try
+            {
+            // Die Stufen werden in ihrer Reihenfolge beendet, sodass keine
+            // Stufe mehr in die Queue einer bereits beendeten Stufe schreibt.
+            stop_stage(stabilise_queue, workers.get(0), true);
+            stop_stage(archive_queue, workers.get(1), true);
+            stop_stage(zip_queue, workers.get(2), false);
+            stop_stage(fanout_queue, workers.get(3), false);
+            Logger.info("PIPELINE SHUT DOWN");
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+            
+        }
+        
+    /**
+     * Terminates the workers of a stage: a STOP marker is put into the queue for every worker, then the workers are
+     * joined.
+     *
+     * @param  queue                The queue of the stage.
+     * @param  stage_workers        The worker threads of the stage.
+     * @param  discard              True if the jobs in the queue are dropped instead of being processed.
+     * @throws InterruptedException The current thread has been interrupted while waiting.
+     */
+    private static void stop_stage(final BlockingQueue<Job> queue, final List<Thread> stage_workers, final boolean discard) throws InterruptedException
+        {
+        
+        if (discard)
+            {
+            final List<Job> jobs = new ArrayList<Job>();
+            queue.drainTo(jobs);
+            for (Job job : jobs)
+                {
+                release(job);
+                }
+            }
+            
+        for (int i = 0; i < stage_workers.size(); i++)
+            {
+            queue.put(STOP);
+            }
+        for (Thread thread : stage_workers)
+            {
+            thread.join();
+            }
+            
+        }
+        
+    /**
+     * Loop of the stabilise stage.
+     */
+    private static void stabilise()
+        {
+        try
+            {
+            while (true)
+                {
+                final Job job = stabilise_queue.take();
+                if (job == STOP)
+                    {
+                    return;
+                    }
+                    
+                // Ein File, das noch nicht stabil ist, verlaesst die Pipeline
+                // sofort und wird beim naechsten Durchlauf erneut detektiert.
+                if (!Processing_InputStability.is_stable(job.file, job.properties.get_stability_window()))
+                    {
+                    Logger.debug("FILE NOT YET STABLE: " + job.path);
+                    release(job);
+                    continue;
+                    }
+                    
+                archive_queue.put(job);
+                }
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+        }
+        
+    /**
+     * Loop of the archive stage.
+     */
+    private static void archive()
+        {
+        try
+            {
+            while (true)
+                {
+                final Job job = archive_queue.take();
+                if (job == STOP)
+                    {
+                    return;
+                    }
+                    
+                // Nach einer Deaktivierung werden keine neuen Files mehr
+                // begonnen. Bereits archivierte Files werden hingegen
+                // noch fertig verarbeitet.
+                if (Processing.is_deactivation_requested())
+                    {
+                    release(job);
+                    continue;
+                    }
+                    
+                try
+                    {
+                    job.sedex_message_id = job.properties.get_sedex_sender_id() + "-"
+                            + MessageIdGenerator.getstamp_for_sedex_message_id();
+                            
+                    job.source = Processing.archive(job.properties, job.file, job.sedex_message_id);
+                    if (job.source == null)
+                        {
+                        release(job);
+                        continue;
+                        }
+                        
+                    // Die Registrierung im GUI muss erfolgen, bevor die Files in
+                    // der Outbox liegen, damit die Quittungen zugeordnet werden
+                    // koennen. Sie erfolgt deshalb hier in der Reihenfolge
+                    // der Archivierung.
+                    Processing_SingleInput.register(job.properties, job.gui, job.file, job.sedex_message_id);
+                    }
+                catch (Exception e)
+                    {
+                    // Wurde das Input-File bereits in den Stage-Ordner
+                    // verschoben, wird es zurueckgelegt.
+                    if (job.source != null)
+                        {
+                        Processing.restore_input(job.properties, job.gui, job.sedex_message_id, job.file.getName());
+                        }
+                    report(job, e);
+                    release(job);
+                    continue;
+                    }
+                    
+                // Zuerst in die Fan-out-Queue, damit deren Reihenfolge
+                // derjenigen der Archivierung entspricht.
+                fanout_queue.put(job);
+                zip_queue.put(job);
+                }
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+        }
+        
+    /**
+     * Loop of the zip stage.
+     */
+    private static void zip()
+        {
+        try
+            {
+            while (true)
+                {
+                final Job job = zip_queue.take();
+                if (job == STOP)
+                    {
+                    return;
+                    }
+                    
+                try
+                    {
+                    Processing_SingleInput.zip(job.properties, job.file, job.source, job.sedex_message_id);
+                    }
+                catch (Exception e)
+                    {
+                    // Das Input-File liegt bereits im Stage-Ordner und wird
+                    // wieder in den Resultate-Ordner gelegt (die Fan-out-Stufe
+                    // meldet nur noch den Fehler).
+                    Processing.restore_input(job.properties, job.gui, job.sedex_message_id, job.file.getName());
+                    job.failure = e;
+                    }
+                finally
+                    {
+                    job.zipped.countDown();
+                    }
+                }
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+        }
+        
+    /**
+     * Loop of the fan-out stage.
+     */
+    private static void fan_out()
+        {
+        try
+            {
+            while (true)
+                {
+                final Job job = fanout_queue.take();
+                if (job == STOP)
+                    {
+                    return;
+                    }
+                    
+                // Warten, bis das ZIP-File des Files geschrieben ist
+                // (die nachfolgenden Files koennen bereits gezippt werden).
+                job.zipped.await();
+                
+                try
+                    {
+                    if (job.failure != null)
+                        {
+                        throw job.failure;
+                        }
+                    Processing_SingleInput.fan_out(job.properties, job.gui, job.file, job.sedex_message_id);
+                    Logger.info("FILE PROCESSED: " + job.sedex_message_id + ": " + job.path);
+                    }
+                catch (Exception e)
+                    {
+                    report(job, e);
+                    }
+                finally
+                    {
+                    release(job);
+                    }
+                }
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+        }
+        
+    /**
+     * Removes an input file from the set of the input files in the pipeline.
+     *
+     * @param job The job of the input file.
+     */
+    private static void release(final Job job)
+        {
+        in_flight.remove(job.path);
+        }
+        
+    /**
+     * Reports an error which has occurred during the processing of an input file.
+     *
+     * @param job The job of the input file.
+     * @param e   The exception.
+     */
+    private static void report(final Job job, final Exception e)
+        {
+        Logger.error(e);
+        SwingUtilities.invokeLater(new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                job.gui.get_dialog_fileprocessingerror().setvisible(e);
+                }
+            });
+        }
+        
+    /**
+     * An input file on its way through the pipeline.
+     */
+    private static class Job
+        
+        {
+        
+        /** The properties to be used. */
+        private final Properties     properties;
+        
+        /** The graphical user interface to be used. */
+        private final Gui            gui;
+        
+        /** The input file. */
+        private final File           file;
+        
+        /** The absolute path of the input file. */
+        private final String         path;
+        
+        /** Signals the fan-out stage that the ZIP file has been written (or that zipping has failed). */
+        private final CountDownLatch zipped = new CountDownLatch(1);
+        
+        /** The sedex message id (assigned by the archive stage). */
+        private volatile String      sedex_message_id;
+        
+        /** The moved input file, i.e. the source of the ZIP file (assigned by the archive stage). */
+        private volatile File        source;
+        
+        /** The exception thrown by the zip stage (null if the ZIP file has been written). */
+        private volatile Exception   failure;
+        
+        /**
+         * Constructs the STOP marker.
+         */
+        private Job()
+            {
+            this.properties = null;
+            this.gui        = null;
+            this.file       = null;
+            this.path       = null;
+            }
+            
+        /**
+         * Constructs a Job object.
+         *
+         * @param properties The properties to be used.
+         * @param gui        The graphical user interface to be used.
+         * @param file       The input file.
+         */
+        private Job(final Properties properties, final Gui gui, final File file)
+            {
+            this.properties = properties;
+            this.gui        = gui;
+            this.file       = file;
+            this.path       = file.getAbsolutePath();
+            }
+            
+        }
+        
+    }
@@ -17,17 +17,12 @@
 package ch.zh.transferclient.processing;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.Vector;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
 
 import ch.zh.transferclient.gui.*;
+import ch.zh.transferclient.main.Archiving_Old_Receipts;
+import ch.zh.transferclient.main.Conf;
 import ch.zh.transferclient.properties.Properties;
+import ch.zh.transferclient.util.FileTransfer;
 
 /**
  * This class is used to process the receipts: The receipt files are evaluated in order to inform the end user about the
@@ -49,74 +44,103 @@ public class Processing_Receipts
         }
     
     /**
-     * Vector for saving the receipts (vector is thread-safe).
+     * Store for saving the receipts (thread-safe).
      * 
-     * Although the GUI protocol tables are always in newest state (because of using 
-     * SwingUtilities.invokeAndWait() instead of SwingUtilities.invokeLater()),
-     * a local (instead of a static) variable could not be used in the present context
-     * because the end user could deactivate the Transfer-Client just in the moment 
-     * after archiving a receipt file and before updating the GUI table. In such
+     * A receipt remains in the store until the corresponding transfer has been found in the TransferRegistry. A local
+     * (instead of a static) variable could not be used in the present context because the end user could deactivate
+     * the Transfer-Client just in the moment after archiving a receipt file and before updating the registry. In such
      * a case the information from the receipt would be lost.
      * 
-     * Can the problem illustrated in figure 5.1 of Goetz (2006) occur in our context?
-     * 
-     * No, this problem cannot occur because the executor thread is only adding receipts (and not removing receipts),
-     * i.e. it cannot happen that the EDT thread requests a receipt which does not exist anymore.
+     * Receipts of transfers which are no longer (or not yet) registered, e.g. because they have been removed from the
+     * protocol, would otherwise remain forever: the store is therefore bounded by RECEIPTS_PENDING_CAPACITY and
+     * RECEIPTS_PENDING_TTL (cf. Processing_Receipts_PendingStore).
      * 
      */
-    private final static Vector<Processing_Receipts_Record> RECEIPTS = new Vector<Processing_Receipts_Record>();
+    private final static Processing_Receipts_PendingStore RECEIPTS = new Processing_Receipts_PendingStore(Conf.RECEIPTS_PENDING_CAPACITY,
+            Conf.RECEIPTS_PENDING_TTL);
+            
+    /**
+     * @return The store of the receipts which could not be assigned to a transfer yet (e.g. for monitoring).
+     */
+    public static Processing_Receipts_PendingStore get_pending_receipts()
+        {
+        return RECEIPTS;
+        }
     
     /**
      * Processes the receipts: The receipt files are evaluated in order to inform the end user about the transfer
      * status.
      * 
-     * @param properties The properties to be used.
-     * @param gui        The graphical user interface to be used.
-     * @throws InterruptedException Exception which can be thrown by SwingUtilities.invokeAndWait.
-     * @throws                      java.lang.reflect.InvocationTargetException Exception which can be thrown by
-     *                              SwingUtilities.invokeAndWait.
+     * @param  properties The properties to be used.
+     * @param  gui        The graphical user interface to be used.
+     * @return            True if the pass has been terminated before all receipt files have been processed
+     *                    (RECEIPTS_BATCH_SIZE or BATCH_TIME_BUDGET exhausted).
      */
-    protected synchronized static void process_receipts(final Properties properties, final Gui gui) throws InterruptedException, java.lang.reflect.InvocationTargetException
+    protected synchronized static boolean process_receipts(final Properties properties, final Gui gui)
         {
         
-        final String            dir_sedex_receipts  = properties.get_sedex_dir_receipts();
-        final ArrayList<String> sedex_recipient_ids = properties.get_sedex_recipient_ids();
+        final String dir_sedex_receipts = properties.get_sedex_dir_receipts();
         
-        final File              dir                 = new File(dir_sedex_receipts);
-        final File[]            files               = dir.listFiles();
+        final File   dir                = new File(dir_sedex_receipts);
+        final File[] files              = dir.listFiles();
         
+        //Pro Durchlauf werden bis zu RECEIPTS_BATCH_SIZE Quittungen
+        //verarbeitet (frueher nur eine einzige), und zwar nur so lange,
+        //bis das Zeitbudget (BATCH_TIME_BUDGET) aufgebraucht ist.
         //Damit der Executor-Thread bei der Deaktivierung
-        //auch bei vielen gleichzeitigen Versandanfragen 
-        //schnell unterbrochen wird, wird neu nur noch 
-        //das erste File der Liste verarbeitet.
-        //Die Verarbeitung der folgenden Files erfolgt
-        //dann im folgenden Taskdurchlauf.
-        int size = files.length;
-        if (size>0)
-            {
-            size=1;
-            }
+        //auch bei vielen gleichzeitigen Quittungen 
+        //schnell unterbrochen wird, wird vor jedem File
+        //geprueft, ob eine Deaktivierung angefordert wurde.
+        //Das GUI wird erst am Ende des Durchlaufs (einmal
+        //fuer alle Quittungen) aktualisiert.
+        final int  batch_size        = properties.get_receipts_batch_size();
+        final long batch_time_budget = properties.get_batch_time_budget();
+        final long batch_start       = System.currentTimeMillis();
+        boolean    batch_exhausted   = false;
+        int        batch_count       = 0;
+        
+        final int  size              = (files == null) ? 0 : files.length;
         
-        //for (int i = 0; i < files.length; i++)
         for (int i = 0; i < size; i++)
             {
             
+            // Die beim Start vorgefundenen Quittungen werden im Hintergrund
+            // archiviert (vgl. Archiving_Old_Receipts) und hier uebersprungen,
+            // ohne dass sie zur Batch-Groesse zaehlen.
+            if (Archiving_Old_Receipts.is_old_receipt(files[i].getName()))
+                {
+                continue;
+                }
+                
+            // Das Zeitbudget wird (wie bei den Input-Files) erst nach der
+            // ersten Quittung geprueft, damit jeder Durchlauf vorankommt.
+            if ((batch_count >= batch_size)
+                    || ((batch_count > 0) && (System.currentTimeMillis() - batch_start >= batch_time_budget)))
+                {
+                batch_exhausted = true;
+                break;
+                }
+            if (Processing.is_deactivation_requested() || Thread.currentThread().isInterrupted())
+                {
+                break;
+                }
+                
+            batch_count++;
             final File file_receipt = files[i];
             
             File file_receipt_copy = new File("archive/receipts/"+ file_receipt.getName());
             
             try
                 {
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder        builder = factory.newDocumentBuilder();
-                
-                // Falls die folgende Zeile die Exception "premature end of file"
-                // werfen sollte, wird das File nicht verschoben (da dann die 
-                // nachfolgenden Zeilen nicht ausgefuehrt werden). Dies bedeutet,
-                // dass der Executor-Thread das File beim naechsten Durchgang 
-                // erneut im Sedex-Receipts-Ordner antreffen wird und erneut 
-                // versuchen wird, das File auszuwerten.
-                Document               doc     = builder.parse(file_receipt);
+                // Falls die folgende Zeile eine Exception werfen sollte (z.B. weil
+                // das File noch nicht vollstaendig geschrieben ist), wird das File
+                // nicht verschoben (da dann die nachfolgenden Zeilen nicht
+                // ausgefuehrt werden). Dies bedeutet, dass der Executor-Thread das
+                // File beim naechsten Durchgang erneut im Sedex-Receipts-Ordner
+                // antreffen wird und erneut versuchen wird, das File auszuwerten.
+                // Das File wird als Stream gelesen (StAX), und zwar nur so weit,
+                // bis die Message-ID und die Statusinformation gefunden sind.
+                final Processing_Receipts_Record receipt = Processing_Receipts_ExtractElements.extract(file_receipt);
                 
                 // Falls der Executor die nachfolgende Zeile erreicht, heisst das,
                 // dass das Parsen erfolgreich war und jetzt versucht werden kann,
@@ -131,55 +155,48 @@ public class Processing_Receipts
                 try
                     {
                     
-                    Files.copy(file_receipt.toPath(), file_receipt_copy.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                    // Auf dem gleichen Volume wird das Receipt-File nur umbenannt
+                    // (frueher: Kopieren und danach Loeschen). Nur wenn der
+                    // Sedex-Receipts-Ordner auf einem anderen Volume liegt,
+                    // wird kopiert und danach geloescht (vgl. FileTransfer.move).
+                    FileTransfer.move(file_receipt.toPath(), file_receipt_copy.toPath());
+                    
+                    // Falls beim Verschieben in den Archiv-Folder etwas schief gehen sollte
+                    // (vorhergehende Zeile), wird das Receipt noch nicht mit den nachfolgenden
+                    // zwei Zeilen registriert, sondern beim naechsten Executor-Thread-Durchgang
+                    // erneut ausgewertet.
                     
-                    // Falls beim Kopieren in den Archiv-Folder etwas schief gehen sollte (vorhergehende Zeile),
-                    // wird noch nicht versucht werden, das File im Sedex-Receipts-Ordner zu loeschen, sondern 
-                    // beim naechsten Executor-Thread-Durchgang erneut ausgewertet. Falls das Kopieren jedoch 
-                    // erfolgreich war, wird versucht, das File im Sedex-Receipts-Ordner zu loeschen.
+                    // Falls das Verschieben ohne Fehler duchgefuehrt werden konnte,
+                    // wird die Information des Receipts im 
+                    // Arbeitsspeicher abgelegt.
+                    RECEIPTS.put(receipt);
                     
-                    try
-                        {
-                        Files.deleteIfExists(file_receipt.toPath());
-                        
-                        // Falls beim Loeschen des Receipt-Files im Sedex-Receipts-Ordner etwas
-                        // schief gehen sollte (vorhergehende Zeile), wird das Receipt noch nicht mit
-                        // den nachfolgenden zwei Zeilen registriert, sondern beim naechsten
-                        // Executor-Thread-Durchgang erneut ausgewertet.
-                        
-                        // Falls die Loeschung ohne Fehler duchgefuehrt werden konnte,
-                        // wird die Information des Receipts extrahiert und im 
-                        // Arbeitsspeicher abgelegt.
-                        Processing_Receipts_Record receipt = Processing_Receipts_ExtractElements.extract(doc,gui);
-                        RECEIPTS.add(receipt);
-                        }
-                    catch(Exception e)
-                        {
-                        // Beim Loeschen des Receipt-Files ist etwas schief gegangen.
-                        // Das Source-File bleibt in diesem Fall erhalten:
-                        // https://stackoverflow.com/questions/54347494/java-nio-file-files-move-operation
-                        // Beim naechsten Executor-Thread Durchlauf wird erneut versucht, 
-                        // das Receipt-File zu loeschen.
-                        }
+                    // Die Quittung wird zudem im Journal festgehalten,
+                    // damit sie auch nach einem Neustart zugeordnet ist.
+                    Processing_Journal.receipt(receipt.get_sedex_message_id(), receipt.get_status_info());
                     
                     }
                 catch(Exception e)
                     {
-                    // Beim Versuch, das Receipt-File ins Archiv zu kopieren, ist etwas schief gelaufen.
+                    // Beim Versuch, das Receipt-File ins Archiv zu verschieben, ist etwas schief gelaufen.
+                    // Das Source-File bleibt in diesem Fall erhalten (bei einem anderen Volume
+                    // allenfalls zusaetzlich die Kopie im Archiv, die beim naechsten Mal ersetzt wird):
+                    // https://stackoverflow.com/questions/54347494/java-nio-file-files-move-operation
                     // Beim naechsten Executor-Thread-Durchlauf wird erneut versucht, 
-                    // das Receipt-File ins Archiv zu kopieren.
+                    // das Receipt-File ins Archiv zu verschieben.
                     }
                 }
             catch(Exception e)
                 {
-                // Beim Parsen des XML-Dokuments ist etwas schief gelaufen.
+                // Beim Lesen des XML-Dokuments ist etwas schief gelaufen.
                 // Beim naechsten Executor-Thread-Durchlauf wird erneut versucht, das XML-Dokument zu parsen.
                 }
             
             }
             
-        Processing_Receipts_GUIUpdate.process_GUIUpdate(gui, sedex_recipient_ids, RECEIPTS);
+        Processing_Receipts_GUIUpdate.process_GUIUpdate(gui, RECEIPTS);
         
+        return batch_exhausted;
         }
     
     }
@@ -16,17 +16,18 @@
 
 package ch.zh.transferclient.processing;
 
-import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import ch.zh.transferclient.gui.*;
-import ch.zh.transferclient.main.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
- * This class is used to extract parameter values from an envelope file. The envelope files are evaluated in order to
+ * This class is used to extract parameter values from a receipt file. The receipt files are evaluated in order to
  * inform the end user about the transfer status of a transmission.
  * 
  * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
@@ -46,60 +47,143 @@ public class Processing_Receipts_ExtractElements
     
     
     /**
-     * Extracts parameter values from an envelope file.
+     * Factory for the streaming parser (created once). DTDs and external entities are not supported, i.e. a receipt
+     * cannot cause the parser to load further files.
+     */
+    private static final XMLInputFactory FACTORY = create_factory();
+    
+    /**
+     * Creates the factory for the streaming parser.
+     * 
+     * @return The factory.
+     */
+    private static XMLInputFactory create_factory()
+        {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+        }
+        
+    /**
+     * Extracts parameter values from a receipt file. The file is read as a stream (StAX) up to the end of the document,
+     * so that a file which is not well-formed (e.g. not yet completely written) is rejected as with the former DOM
+     * parser. If an element occurs several times, the last occurrence is used (as before).
      *
-     * @param  doc          The document to be used.
-     * @param  gui          The graphical user interface to be used.
-
-     * @return              The value of the parameter.
+     * @param  file               The receipt file to be used.
+     * @return                    The values of the parameters ("Not available" if a parameter is missing).
+     * @throws IOException        The file cannot be read.
+     * @throws XMLStreamException The file is not well-formed (e.g. not yet completely written).
      */
-    protected synchronized static Processing_Receipts_Record extract(final Document doc,final Gui gui)
+    protected static Processing_Receipts_Record extract(final File file) throws IOException, XMLStreamException
         {
-        String messageId  = "Not available";
-        String statusInfo = "Not available";
+        String messageId  = null;
+        String statusInfo = null;
         
-        try
+        try (InputStream stream = new FileInputStream(file))
             {
             
-            NodeList subnodes = doc.getChildNodes().item(0).getChildNodes();
-            
-            for (int i = 0; i < subnodes.getLength(); i++)
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(stream);
+            try
                 {
-                
-                Node node = subnodes.item(i);
-                
-                // In der folgenden Zeile wurde "equals" durch "contains"
-                // ersetzt, damit auch das alte Quittungsformat der
-                // Kantone Nidwalden und Obwalden verarbeitet werden kann.
-                if (node.getNodeName().contains("messageId"))
-                    {                    
-                    messageId   = node.getTextContent(); 
-                    }
-                if (node.getNodeName().contains("statusInfo"))
-                    {                    
-                    statusInfo  = node.getTextContent(); 
+                int depth = 0;
+                // Das Dokument wird bis zum Ende gelesen (auch wenn beide Werte
+                // bereits gefunden sind): Erst dann steht fest, dass es
+                // vollstaendig und wohlgeformt ist.
+                while (reader.hasNext())
+                    {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT)
+                        {
+                        depth++;
+                        
+                        // Es werden nur die direkten Kindelemente des
+                        // Wurzelelements ausgewertet.
+                        if (depth == 2)
+                            {
+                            String name = qualified_name(reader);
+                            
+                            // In den folgenden Zeilen wird "contains" statt "equals"
+                            // verwendet, damit auch das alte Quittungsformat der
+                            // Kantone Nidwalden und Obwalden verarbeitet werden kann.
+                            if (name.contains("messageId"))
+                                {
+                                messageId = read_text(reader);
+                                depth--;
+                                }
+                            else if (name.contains("statusInfo"))
+                                {
+                                statusInfo = read_text(reader);
+                                depth--;
+                                }
+                            }
+                        }
+                    else if (event == XMLStreamConstants.END_ELEMENT)
+                        {
+                        depth--;
+                        }
                     }
                 }
-                
-            }
-        catch (Exception e)
-            {
-            Logger.error(e);
-            
-            SwingUtilities.invokeLater(new Runnable()
+            finally
                 {
-                @Override
-                public void run()
-                    {
-                    gui.get_dialog_fileprocessingerror().setvisible(e);
-                    //gui.get_dialog_receiptnotwellformed().setvisible();
-                    }
-                });
+                reader.close();
+                }
+                
             }
             
-        Processing_Receipts_Record record = new Processing_Receipts_Record(messageId,statusInfo); 
+        Processing_Receipts_Record record = new Processing_Receipts_Record(
+                (messageId  == null) ? "Not available" : messageId,
+                (statusInfo == null) ? "Not available" : statusInfo); 
         
         return record;
         }
         
+    /**
+     * Returns the qualified name (prefix:localname) of the current element, as returned by Node.getNodeName.
+     * 
+     * @param  reader The reader (positioned at a start element).
+     * @return        The qualified name.
+     */
+    private static String qualified_name(final XMLStreamReader reader)
+        {
+        String prefix = reader.getPrefix();
+        if ((prefix == null) || prefix.isEmpty())
+            {
+            return reader.getLocalName();
+            }
+        return prefix + ":" + reader.getLocalName();
+        }
+        
+    /**
+     * Reads the text content of the current element (including the text of nested elements, as returned by
+     * Node.getTextContent).
+     * 
+     * @param  reader             The reader (positioned at a start element, afterwards at the matching end element).
+     * @return                    The text content.
+     * @throws XMLStreamException The file is not well-formed.
+     */
+    private static String read_text(final XMLStreamReader reader) throws XMLStreamException
+        {
+        StringBuilder text  = new StringBuilder();
+        int           depth = 1;
+        while (depth > 0)
+            {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                depth++;
+                }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                {
+                depth--;
+                }
+            else if ((event == XMLStreamConstants.CHARACTERS) || (event == XMLStreamConstants.CDATA)
+                    || (event == XMLStreamConstants.SPACE))
+                {
+                text.append(reader.getText());
+                }
+            }
+        return text.toString();
+        }
+        
     }
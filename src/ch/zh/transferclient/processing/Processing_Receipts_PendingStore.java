@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.zh.transferclient.main.Logger;
+
+/**
+ * This class is used to keep the receipts which could not be assigned to a transfer yet.
+ *
+ * The receipts are kept in a concurrent map (key: sedex message id incl. recipient suffix, e.g. "-E0"); a newer
+ * receipt of the same message replaces the older one. The store is bounded: receipts which have been pending for more
+ * than the time to live are evicted, and if the store exceeds its capacity, the oldest receipts are evicted. Such
+ * receipts belong to transfers which are no longer shown in the protocol (they remain in the archive and, for pending
+ * transfers, in the journal). The number of evicted receipts is counted for monitoring.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_Receipts_PendingStore
+    
+    {
+    
+    /** The pending receipts (key: sedex message id incl. recipient suffix). */
+    private final ConcurrentHashMap<String, Entry> entries   = new ConcurrentHashMap<String, Entry>();
+    
+    /** The entries in the order of their arrival (may contain entries which have already been removed). */
+    private final ConcurrentLinkedQueue<Entry>     arrivals  = new ConcurrentLinkedQueue<Entry>();
+    
+    /** Number of evicted receipts since the start. */
+    private final AtomicLong                       evictions = new AtomicLong();
+    
+    /** Maximum number of pending receipts. */
+    private final int                              capacity;
+    
+    /** Time to live of a pending receipt in milliseconds. */
+    private final long                             ttl;
+    
+    /**
+     * Constructs a Processing_Receipts_PendingStore object.
+     *
+     * @param capacity    Maximum number of pending receipts.
+     * @param ttl_minutes Time to live of a pending receipt in minutes.
+     */
+    protected Processing_Receipts_PendingStore(final int capacity, final int ttl_minutes)
+        {
+        this.capacity = capacity;
+        this.ttl      = TimeUnit.MINUTES.toMillis(ttl_minutes);
+        }
+        
+    /**
+     * Adds a receipt (replaces a pending receipt of the same sedex message id) and evicts the receipts exceeding the
+     * capacity.
+     *
+     * @param receipt The receipt.
+     */
+    protected void put(final Processing_Receipts_Record receipt)
+        {
+        final Entry entry = new Entry(receipt, System.currentTimeMillis());
+        this.entries.put(receipt.get_sedex_message_id(), entry);
+        this.arrivals.add(entry);
+        this.evict(entry.arrival);
+        }
+        
+    /**
+     * Removes a receipt after it has been assigned.
+     *
+     * @param receipt The receipt.
+     */
+    protected void remove(final Processing_Receipts_Record receipt)
+        {
+        final Entry entry = this.entries.get(receipt.get_sedex_message_id());
+        if ((entry != null) && (entry.receipt == receipt))
+            {
+            this.entries.remove(receipt.get_sedex_message_id(), entry);
+            }
+        }
+        
+    /**
+     * Evicts the expired receipts and returns the remaining ones.
+     *
+     * @return The pending receipts (a weakly consistent view).
+     */
+    protected Collection<Entry> pending()
+        {
+        this.evict(System.currentTimeMillis());
+        return this.entries.values();
+        }
+        
+    /**
+     * @return Number of pending receipts.
+     */
+    public int get_size()
+        {
+        return this.entries.size();
+        }
+        
+    /**
+     * @return Number of evicted receipts since the start.
+     */
+    public long get_evictions()
+        {
+        return this.evictions.get();
+        }
+        
+    /**
+     * Evicts the receipts which have expired or which exceed the capacity (oldest first).
+     *
+     * @param now The current time in milliseconds.
+     */
+    private void evict(final long now)
+        {
+        
+        Entry head;
+        while ((head = this.arrivals.peek()) != null)
+            {
+            
+            // Eintraege, die inzwischen zugeordnet oder ersetzt worden sind,
+            // werden nur noch aus der Reihenfolge entfernt.
+            final boolean current = (this.entries.get(head.receipt.get_sedex_message_id()) == head);
+            if (current && (now - head.arrival < this.ttl) && (this.entries.size() <= this.capacity))
+                {
+                break;
+                }
+                
+            if (this.arrivals.remove(head) && current && this.entries.remove(head.receipt.get_sedex_message_id(), head))
+                {
+                final long total = this.evictions.incrementAndGet();
+                Logger.info("PENDING RECEIPT EVICTED (" + ((now - head.arrival >= this.ttl) ? "EXPIRED" : "CAPACITY")
+                        + ", TOTAL " + total + "): " + head.receipt.get_sedex_message_id());
+                }
+                
+            }
+            
+        }
+        
+    /**
+     * A pending receipt together with its time of arrival.
+     */
+    protected static final class Entry
+        
+        {
+        
+        /** The receipt. */
+        private final Processing_Receipts_Record receipt;
+        
+        /** Time of arrival in milliseconds. */
+        private final long                       arrival;
+        
+        /**
+         * Constructs an Entry object.
+         *
+         * @param receipt The receipt.
+         * @param arrival Time of arrival in milliseconds.
+         */
+        private Entry(final Processing_Receipts_Record receipt, final long arrival)
+            {
+            this.receipt = receipt;
+            this.arrival = arrival;
+            }
+            
+        /**
+         * @return The receipt.
+         */
+        protected Processing_Receipts_Record get_receipt()
+            {
+            return this.receipt;
+            }
+            
+        }
+        
+    }
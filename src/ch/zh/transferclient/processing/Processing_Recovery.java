@@ -0,0 +1,434 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import ch.zh.transferclient.gui.Gui;
+import ch.zh.transferclient.main.Logger;
+import ch.zh.transferclient.properties.Properties;
+import ch.zh.transferclient.util.FileTransfer;
+
+/**
+ * This class is used to resume the fan-outs which have been interrupted (e.g. by a crash of the Transfer-Client).
+ *
+ * A fan-out can be resumed if the journal (cf. Processing_Journal) shows that the ZIP file has been written completely
+ * and the ZIP file is still in the stage folder. Only the recipients without a QUEUED record are completed, and the ZIP
+ * file is reused (not written again). Afterwards, the ZIP file is deleted and the input file is archived as at the end
+ * of a regular fan-out. A recipient whose envelope is still in the sedex outbox is not delivered twice. The pass runs on
+ * a background thread in parallel with the startup of the GUI; the processing of the input files waits until it has
+ * finished, so that an input file cannot be processed twice.
+ *
+ * The input files in progress lie in the stage folder (cf. Processing.archive). An input file whose transfer has not
+ * reached any recipient (or is unknown to the journal) is moved back into the results folder and processed again. The
+ * input file of a fan-out which has reached some recipients but cannot be resumed (ZIP file missing) is kept (it is
+ * moved to archive/stage) and reported as an error, since it has to be sent to the remaining recipients manually. The
+ * same applies to every input file which would be processed again if the journal is incomplete (cf.
+ * Processing_Journal.is_complete), since the records of recipients already served may have been lost.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_Recovery
+    
+    {
+    
+    /** The transfers whose fan-out can be resumed. */
+    private static final List<Processing_Journal_Transfer> recoverable = new ArrayList<Processing_Journal_Transfer>();
+    
+    /** The sedex message ids of the transfers whose fan-out can be resumed. */
+    private static final HashSet<String>                   ids         = new HashSet<String>();
+    
+    /** Signals that the recovery pass has finished (counted down at once if there is nothing to resume). */
+    private static final CountDownLatch                    finished    = new CountDownLatch(1);
+    
+    /** The input files of the fan-outs which cannot be resumed (reported by report). */
+    private static final List<String>                      unresumable = new ArrayList<String>();
+    
+    /**
+     * Constructs a Processing_Recovery object.
+     */
+    private Processing_Recovery()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Determines the transfers whose fan-out can be resumed and resolves the other input files in the stage folder
+     * (called at startup after the journal has been opened and before the stage folder is cleaned up).
+     *
+     * @param properties The properties to be used.
+     */
+    public static synchronized void prepare(final Properties properties)
+        {
+        
+        recoverable.clear();
+        ids.clear();
+        unresumable.clear();
+        
+        // Uebertragungen, die mindestens einen Empfaenger erreicht haben
+        final HashSet<String> started_ids     = new HashSet<String>();
+        
+        // Uebertragungen, die nicht alle Empfaenger erreicht haben und
+        // nicht fortgesetzt werden koennen
+        final HashSet<String> unresumable_ids = new HashSet<String>();
+        
+        // Ist das Journal unvollstaendig, kann nicht ausgeschlossen werden,
+        // dass ein Input-File bereits an Empfaenger versendet wurde.
+        final boolean journal_complete = Processing_Journal.is_complete();
+        
+        for (Processing_Journal_Transfer transfer : Processing_Journal.get_pending_transfers())
+            {
+            
+            // Auch wenn bereits alle Empfaenger bedient sind, wird der Abschluss
+            // (Loeschung des ZIP-Files und des Input-Files) nachgeholt, solange
+            // das ZIP-File noch im Stage-Ordner liegt.
+            final String sedex_message_id = transfer.get_sedex_message_id();
+            if (transfer.is_zipped() && Files.exists(origin(sedex_message_id)))
+                {
+                recoverable.add(transfer);
+                ids.add(sedex_message_id);
+                }
+            else if (is_complete(transfer))
+                {
+                started_ids.add(sedex_message_id);
+                }
+            else if (!is_started(transfer) && journal_complete)
+                {
+                // Das ZIP-File ist nicht (vollstaendig) vorhanden und noch kein
+                // Empfaenger hat die Meldung erhalten: Das Input-File wird
+                // (nachfolgend) in den Resultate-Ordner zurueckverschoben und
+                // unter einer neuen Message-ID erneut verarbeitet.
+                Processing_Journal.discarded(sedex_message_id);
+                Logger.info("INTERRUPTED TRANSFER DISCARDED (INPUT FILE WILL BE PROCESSED AGAIN): " + sedex_message_id);
+                }
+            else
+                {
+                unresumable_ids.add(sedex_message_id);
+                Logger.info("INTERRUPTED FAN-OUT CANNOT BE RESUMED (ZIP FILE MISSING"
+                        + (journal_complete ? "): " : ", JOURNAL INCOMPLETE): ") + sedex_message_id);
+                }
+                
+            }
+            
+        // ---------------------------------//
+        // Input-Files im Stage-Ordner      //
+        // ---------------------------------//
+        final File[] files_stage = new File("stage").listFiles();
+        final int    size        = (files_stage == null) ? 0 : files_stage.length;
+        for (int i = 0; i < size; i++)
+            {
+            
+            final String sedex_message_id = input_id(files_stage[i].getName());
+            if ((sedex_message_id == null) || ids.contains(sedex_message_id))
+                {
+                // Kein Input-File bzw. Abschluss durch resume()
+                continue;
+                }
+                
+            final String file_name = files_stage[i].getName().substring(7 + sedex_message_id.length());
+            if (unresumable_ids.contains(sedex_message_id))
+                {
+                // Das Input-File darf weder geloescht noch erneut versendet
+                // werden: Es wird (wie alle nicht reservierten Files im
+                // Stage-Ordner) nach archive/stage verschoben, vgl.
+                // Archiving_Old_Receipts, und als Fehler gemeldet.
+                unresumable.add(files_stage[i].getName());
+                Logger.info("INPUT FILE KEPT (FAN-OUT CANNOT BE RESUMED): " + sedex_message_id + ": " + file_name);
+                continue;
+                }
+                
+            try
+                {
+                if (started_ids.contains(sedex_message_id))
+                    {
+                    // Die Meldung hat mindestens einen Empfaenger erreicht:
+                    // Das Input-File wird nicht erneut versendet.
+                    Processing.finish_archiving(properties, sedex_message_id, file_name);
+                    continue;
+                    }
+                    
+                if (!journal_complete)
+                    {
+                    // Ohne vollstaendiges Journal ist unbekannt, ob die Meldung
+                    // bereits Empfaenger erreicht hat: Das File wird nicht
+                    // erneut versendet, sondern behalten und gemeldet.
+                    unresumable.add(files_stage[i].getName());
+                    Logger.info("INPUT FILE KEPT (JOURNAL INCOMPLETE): " + sedex_message_id + ": " + file_name);
+                    continue;
+                    }
+                    
+                // Die Uebertragung wurde verworfen oder ist dem Journal nicht
+                // bekannt (Absturz vor dem Schreiben des Journals): Das File
+                // wird wie vor der Verarbeitung in den Resultate-Ordner gelegt.
+                final Path path_results = Paths.get(properties.get_folder_results() + "/" + file_name);
+                if (Files.exists(path_results))
+                    {
+                    Logger.info("INPUT FILE CANNOT BE MOVED BACK (FILE EXISTS IN RESULTS FOLDER): " + files_stage[i].getName());
+                    continue;
+                    }
+                FileTransfer.move(files_stage[i].toPath(), path_results);
+                Logger.info("INPUT FILE MOVED BACK TO THE RESULTS FOLDER: " + sedex_message_id + ": " + file_name);
+                }
+            catch (IOException e)
+                {
+                Logger.error(e);
+                }
+                
+            }
+            
+        }
+        
+    /**
+     * Reports the input files which are kept since their transfer cannot be resumed or repeated (called once after the
+     * GUI has been created).
+     *
+     * @param gui The GUI to be used.
+     */
+    public static synchronized void report(final Gui gui)
+        {
+        
+        if (unresumable.isEmpty())
+            {
+            return;
+            }
+            
+        final StringBuilder message = new StringBuilder("Interrupted transfer(s) cannot be resumed or repeated "
+                + "automatically (ZIP file missing or journal incomplete), the message may have reached some but not "
+                + "all recipients. The input file(s) have been kept in archive/stage:");
+        for (String file_name : unresumable)
+            {
+            message.append(System.lineSeparator()).append(file_name);
+            }
+        gui.get_dialog_fileprocessingerror().setvisible(new IOException(message.toString()));
+        
+        }
+        
+    /**
+     * Checks whether a file in the stage folder belongs to a fan-out which will be resumed (such files must not be moved
+     * to the archive).
+     *
+     * @param  file_name The name of the file in the stage folder.
+     * @return           True if the file belongs to a fan-out which will be resumed.
+     */
+    public static synchronized boolean is_reserved(final String file_name)
+        {
+        
+        // input_<ID>_<Name>
+        final String input_id = input_id(file_name);
+        if (input_id != null)
+            {
+            return ids.contains(input_id);
+            }
+            
+        // data_<ID>.zip, data_<ID>-E<j>.zip oder envl_<ID>-E<j>.xml
+        if (!(file_name.startsWith("data_") || file_name.startsWith("envl_")) || (file_name.length() < 10))
+            {
+            return false;
+            }
+        String sedex_message_id = file_name.substring(5, file_name.length() - 4);
+        if (sedex_message_id.contains("-E"))
+            {
+            sedex_message_id = sedex_message_id.substring(0, sedex_message_id.lastIndexOf("-E"));
+            }
+        return ids.contains(sedex_message_id);
+        
+        }
+        
+    /**
+     * Starts the recovery pass on a background thread.
+     *
+     * @param properties The properties to be used.
+     */
+    public static synchronized void start(final Properties properties)
+        {
+        
+        if (recoverable.isEmpty())
+            {
+            finished.countDown();
+            return;
+            }
+            
+        final List<Processing_Journal_Transfer> transfers = new ArrayList<Processing_Journal_Transfer>(recoverable);
+        final Thread thread = new Thread(new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                try
+                    {
+                    for (Processing_Journal_Transfer transfer : transfers)
+                        {
+                        resume(properties, transfer);
+                        }
+                    }
+                finally
+                    {
+                    finished.countDown();
+                    }
+                }
+            }, "TFC-Recovery");
+        thread.setDaemon(true);
+        thread.start();
+        
+        }
+        
+    /**
+     * Waits until the recovery pass has finished (called before input files are processed and before the journal is
+     * closed).
+     */
+    public static void await_completion()
+        {
+        try
+            {
+            finished.await();
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            }
+        }
+        
+    /**
+     * Resumes the fan-out of a transfer.
+     *
+     * @param properties The properties to be used.
+     * @param transfer   The transfer.
+     */
+    private static void resume(final Properties properties, final Processing_Journal_Transfer transfer)
+        {
+        
+        final String sedex_message_id = transfer.get_sedex_message_id();
+        final String sedex_dir_outbox = properties.get_sedex_dir_outbox();
+        final Path   origin           = origin(sedex_message_id);
+        int          completed        = 0;
+        
+        try
+            {
+            
+            for (int j = transfer.get_sedex_recipient_ids().size() - 1; j >= 0; j--)
+                {
+                
+                if (transfer.is_queued(j) || (transfer.get_status_info(j) != null))
+                    {
+                    continue;
+                    }
+                    
+                // Das Envelopefile wird erst nach dem Datenfile in die Outbox
+                // verschoben. Liegt es noch in der Outbox, ist der Empfaenger
+                // vollstaendig bedient (nur der QUEUED-Record fehlt).
+                if (Files.exists(Paths.get(sedex_dir_outbox + "/envl_" + sedex_message_id + "-E" + j + ".xml")))
+                    {
+                    Processing_Journal.queued(sedex_message_id, j);
+                    continue;
+                    }
+                    
+                Processing_SingleInput.fan_out_recipient(properties.get_sedex_sender_id(), sedex_dir_outbox, origin, sedex_message_id,
+                        j, transfer.get_sedex_recipient_ids().get(j));
+                Processing_Journal.queued(sedex_message_id, j);
+                completed++;
+                
+                }
+                
+            // Abschluss wie in Processing_SingleInput.fan_out (inkl. der
+            // Zwischenfiles eines abgebrochenen Durchgangs)
+            for (int j = 0; j < transfer.get_sedex_recipient_ids().size(); j++)
+                {
+                Files.deleteIfExists(Paths.get("stage/envl_" + sedex_message_id + "-E" + j + ".xml"));
+                Files.deleteIfExists(Paths.get("stage/data_" + sedex_message_id + "-E" + j + ".zip"));
+                }
+            Files.delete(origin);
+            Processing.finish_archiving(properties, sedex_message_id, transfer.get_file_name());
+                
+            Logger.info("INTERRUPTED FAN-OUT RESUMED: " + sedex_message_id + ": " + completed + " RECIPIENT(S) COMPLETED: "
+                    + transfer.get_file_name());
+                    
+            }
+        catch (Exception e)
+            {
+            // Der Versuch wird beim naechsten Start wiederholt (das ZIP-File
+            // bleibt im Stage-Ordner).
+            Logger.error(e);
+            }
+            
+        }
+        
+    /**
+     * @param  file_name The name of a file in the stage folder.
+     * @return           The sedex message id if the file is an input file (input_<ID>_<Name>), else null.
+     */
+    private static String input_id(final String file_name)
+        {
+        // Die Message-ID enthaelt keinen Unterstrich.
+        final int end = file_name.indexOf('_', 6);
+        if (!file_name.startsWith("input_") || (end < 0))
+            {
+            return null;
+            }
+        return file_name.substring(6, end);
+        }
+        
+    /**
+     * @param  sedex_message_id The sedex message id.
+     * @return                  The ZIP file of the transfer in the stage folder.
+     */
+    private static Path origin(final String sedex_message_id)
+        {
+        return Paths.get("stage/data_" + sedex_message_id + ".zip");
+        }
+        
+    /**
+     * @param  transfer The transfer.
+     * @return          True if the files have been placed into the sedex outbox for every recipient.
+     */
+    private static boolean is_complete(final Processing_Journal_Transfer transfer)
+        {
+        for (int j = 0; j < transfer.get_sedex_recipient_ids().size(); j++)
+            {
+            if (!transfer.is_queued(j) && (transfer.get_status_info(j) == null))
+                {
+                return false;
+                }
+            }
+        return true;
+        }
+        
+    /**
+     * @param  transfer The transfer.
+     * @return          True if the files have been placed into the sedex outbox for at least one recipient.
+     */
+    private static boolean is_started(final Processing_Journal_Transfer transfer)
+        {
+        for (int j = 0; j < transfer.get_sedex_recipient_ids().size(); j++)
+            {
+            if (transfer.is_queued(j) || (transfer.get_status_info(j) != null))
+                {
+                return true;
+                }
+            }
+        return false;
+        }
+        
+    }
@@ -23,12 +23,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import java.util.ArrayList;
-import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import ch.zh.transferclient.gui.*;
+import ch.zh.transferclient.main.Logger;
 import ch.zh.transferclient.properties.*;
+import ch.zh.transferclient.util.FileTransfer;
 
 /**
  * This class is used to process a single input file.
@@ -53,22 +54,58 @@ public class Processing_SingleInput
      * 
      * @param  properties            The reference to the properties object to be used.
      * @param  gui                   The reference to the GUI object to be used.
-     * @param  file                  The reference to the File object to be processed.
+     * @param  file                  The reference to the File object to be processed (original location).
+     * @param  source                The input file after it has been moved by Processing.archive.
      * @param  sedex_message_id      The reference to the sedex message id String object to be used.
      * @throws FileNotFoundException File cannot be found.
      * @throws IOException           IO operation fails.
      */
-    protected synchronized static void process
+    protected static void process
     /* @formatter:off */
         (
         final Properties        properties,
         final Gui               gui,
         final File              file,
+        final File              source,
         final String            sedex_message_id
         ) throws Exception
         /* @formatter:on */
         {
         
+        // Bei der sequentiellen Verarbeitung werden die drei Schritte
+        // unmittelbar nacheinander ausgefuehrt. In der Pipeline
+        // (vgl. Processing_Pipeline) werden sie auf verschiedene
+        // Threads verteilt.
+        // Scheitert das Zippen, liegt das Input-File bereits im
+        // Stage-Ordner; es wird deshalb in den Resultate-Ordner
+        // zurueckgelegt (ein Scheitern des Fan-outs behandelt
+        // fan_out selbst).
+        try
+            {
+            register(properties, gui, file, sedex_message_id);
+            zip(properties, file, source, sedex_message_id);
+            }
+        catch (Exception e)
+            {
+            Processing.restore_input(properties, gui, sedex_message_id, file.getName());
+            throw e;
+            }
+        fan_out(properties, gui, file, sedex_message_id);
+        
+        }
+        
+    /**
+     * Registers a single input file in the GUI (must be done before the file is moved to the outbox, so that the
+     * receipts can be assigned).
+     * 
+     * @param properties       The reference to the properties object to be used.
+     * @param gui              The reference to the GUI object to be used.
+     * @param file             The reference to the File object to be processed.
+     * @param sedex_message_id The reference to the sedex message id String object to be used.
+     */
+    protected static void register(final Properties properties, final Gui gui, final File file, final String sedex_message_id)
+        {
+        
         //-----------------//
         // Updaten des GUI //
         //-----------------//
@@ -77,21 +114,239 @@ public class Processing_SingleInput
         // Verarbeitung eingeleitet worden ist.
         Processing_SingleInput_GUIUpdate.process(properties, gui, file, sedex_message_id);
         
+        //---------------------//
+        // Eintrag ins Journal //
+        //---------------------//
+        Processing_Journal.detected(sedex_message_id, file.getName(), properties.get_sedex_recipient_ids(),
+                properties.get_sedex_recipient_labels());
+                
+        }
+        
+    /**
+     * Writes the ZIP file of a single input file into the stage folder.
+     * 
+     * The data are read from the moved input file (source), the ZIP entry keeps the original name of the input file.
+     * 
+     * @param  properties       The reference to the properties object to be used.
+     * @param  file             The reference to the File object to be processed (original location).
+     * @param  source           The input file after it has been moved by Processing.archive.
+     * @param  sedex_message_id The reference to the sedex message id String object to be used.
+     * @throws IOException      IO operation fails.
+     */
+    protected static void zip(final Properties properties, final File file, final File source, final String sedex_message_id) throws IOException
+        {
+        
         //------------------------//
         // Abfrage der Properties //
         //------------------------//
         final boolean           zip_compression     = properties.get_zip_compression();
-        final String            sedex_sender_id     = properties.get_sedex_sender_id();
-        final ArrayList<String> sedex_recipient_ids = properties.get_sedex_recipient_ids();
-        final String            sedex_dir_outbox    = properties.get_sedex_dir_outbox();
+        final int               zip_level           = properties.get_zip_compression_level();
+        final boolean           zip_adaptive        = properties.get_zip_compression_adaptive();
+        final int               zip_parallelism     = properties.get_zip_parallelism();
         
         // ----------------//
         // ZIP-Generierung //
         // ----------------//        
-        ZipEntry                ze                  = new ZipEntry(file.getName());
+        
+        // Festlegung der Kompressionsmethode: Mit Level 0 wird nicht komprimiert.
+        // Im adaptiven Modus wird anhand einer Stichprobe geschaetzt, ob sich die
+        // Kompression lohnt (bereits komprimierte Files wie xlsx oder zip werden
+        // ohne Kompression verpackt).
+        boolean deflate = zip_compression && (zip_level > 0);
+        if (deflate && zip_adaptive)
+            {
+            final double estimated_ratio = Processing_SingleInput_CompressionPolicy.estimate_ratio(source, zip_level);
+            deflate = (estimated_ratio <= Processing_SingleInput_CompressionPolicy.MAX_RATIO);
+            Logger.debug("ZIP ESTIMATED RATIO: " + String.format("%.3f", estimated_ratio) + ": " + file.getName());
+            }
+            
+        final long size = source.length();
+        if (!deflate && (size < Processing_SingleInput_ZipWriter.ZIP64_LIMIT))
+            {
+            // Ohne Kompression wird das ZIP-File in einem einzigen Durchgang
+            // geschrieben: Die CRC-32 wird waehrend des Schreibens berechnet
+            // und danach im lokalen Header nachgetragen. Das Input-File
+            // muss so nur einmal (statt zweimal) gelesen werden.
+            Processing_SingleInput_ZipWriter.write_stored(source, file.getName(), Paths.get("stage/data_" + sedex_message_id + ".zip"));
+            }
+        else if (deflate && (zip_parallelism > 1)
+                && (size > Processing_SingleInput_ZipWriter.BLOCK_SIZE)
+                && (size < Processing_SingleInput_ZipWriter.ZIP64_LIMIT))
+            {
+            // Grosse Files werden blockweise auf mehreren Threads komprimiert.
+            // Das Resultat ist ein gewoehnlicher Deflate-Eintrag, der von
+            // jedem ZIP-Programm gelesen werden kann.
+            Processing_SingleInput_ZipWriter.write_deflated_parallel(source, file.getName(),
+                    Paths.get("stage/data_" + sedex_message_id + ".zip"), zip_parallelism, zip_level);
+            }
+        else
+            {
+            write_zip(source, file.getName(), sedex_message_id, deflate, zip_level);
+            }
+            
+        // Protokollierung der gewaehlten Methode und des erreichten Verhaeltnisses
+        // (komprimierte Groesse / Originalgroesse)
+        final long zip_size = new File("stage/data_" + sedex_message_id + ".zip").length();
+        Logger.info("ZIP CREATED: " + sedex_message_id + ": METHOD=" + (deflate ? "DEFLATED (LEVEL " + zip_level + ")" : "STORED")
+                + ", RATIO=" + String.format("%.3f", (size > 0) ? (double) zip_size / size : 1.0)
+                + ": " + file.getName());
+                
+        Processing_Journal.zipped(sedex_message_id);
+        
+        }
+        
+    /**
+     * Places the ZIP file of a single input file together with the envelopes into the sedex outbox (once per
+     * recipient) and moves the input file into the archive or deletes it afterwards (cf. Processing.finish_archiving).
+     * 
+     * If the fan-out fails before any recipient has been served, the input file is moved back into the results folder
+     * (cf. Processing.restore_input). Otherwise, the ZIP file and the input file remain in the stage folder and the
+     * fan-out is resumed at the next startup (cf. Processing_Recovery).
+     * 
+     * @param  properties       The reference to the properties object to be used.
+     * @param  gui              The reference to the GUI object to be used.
+     * @param  file             The reference to the File object to be processed (original location).
+     * @param  sedex_message_id The reference to the sedex message id String object to be used.
+     * @throws Exception        The envelopes cannot be created or IO operation fails.
+     */
+    protected static void fan_out(final Properties properties, final Gui gui, final File file, final String sedex_message_id) throws Exception
+        {
+        
+        //------------------------//
+        // Abfrage der Properties //
+        //------------------------//
+        final String            sedex_sender_id     = properties.get_sedex_sender_id();
+        final ArrayList<String> sedex_recipient_ids = properties.get_sedex_recipient_ids();
+        final String            sedex_dir_outbox    = properties.get_sedex_dir_outbox();
+        
+        // Das ZIP-File wird nur einmal geschrieben
+        Path origin = Paths.get("stage/data_" + sedex_message_id + ".zip");
+        
+        // und fuer jeden Empfaenger als Hardlink (oder falls nicht moeglich als Kopie)
+        // in der Outbox bereitgestellt:
+        int queued = 0;
+        try
+            {
+            for (int j = sedex_recipient_ids.size() - 1; j >= 0; j--)
+                {
+                fan_out_recipient(sedex_sender_id, sedex_dir_outbox, origin, sedex_message_id, j, sedex_recipient_ids.get(j));
+                
+                // Der Empfaenger ist bedient, auch wenn der QUEUED-Record
+                // nicht geschrieben werden kann (das Input-File darf dann
+                // nicht mehr erneut versendet werden).
+                queued++;
+                Processing_Journal.queued(sedex_message_id, j);
+                }
+            }
+        catch (Exception e)
+            {
+            if (queued > 0)
+                {
+                Logger.info("FAN-OUT INTERRUPTED (WILL BE RESUMED AT THE NEXT START): " + sedex_message_id + ": " + file.getName());
+                throw e;
+                }
+                
+            // Noch kein Empfaenger ist bedient: Die Zwischenfiles und ein
+            // allfaelliges Datenfile ohne Umschlag in der Outbox werden
+            // entfernt, das Input-File wird erneut verarbeitet.
+            for (int j = 0; j < sedex_recipient_ids.size(); j++)
+                {
+                final String suffix = sedex_message_id + "-E" + j;
+                Files.deleteIfExists(Paths.get("stage/envl_" + suffix + ".xml"));
+                Files.deleteIfExists(Paths.get("stage/data_" + suffix + ".zip"));
+                if (!Files.exists(Paths.get(sedex_dir_outbox + "/envl_" + suffix + ".xml")))
+                    {
+                    Files.deleteIfExists(Paths.get(sedex_dir_outbox + "/data_" + suffix + ".zip"));
+                    }
+                }
+            Processing.restore_input(properties, gui, sedex_message_id, file.getName());
+            throw e;
+            }
+        
+        // Loeschung des Vorlage ZIPs
+        Files.delete(origin);
+        
+        // Archivierung bzw. Loeschung des Datenfiles (das Original liegt
+        // seit Processing.archive nicht mehr im Resultate-Ordner, sondern
+        // im Stage-Ordner)
+        Processing.finish_archiving(properties, sedex_message_id, file.getName());
+        
+        }
+        
+    /**
+     * Places the data file and the envelope of a single recipient into the sedex outbox (also used to resume an
+     * interrupted fan-out, cf. Processing_Recovery).
+     * 
+     * @param  sedex_sender_id    The sedex sender id.
+     * @param  sedex_dir_outbox   The sedex outbox.
+     * @param  origin             The ZIP file in the stage folder (is left untouched).
+     * @param  sedex_message_id   The sedex message id (without the recipient suffix).
+     * @param  j                  The index of the recipient.
+     * @param  sedex_recipient_id The sedex recipient id.
+     * @throws IOException        IO operation fails.
+     */
+    protected static void fan_out_recipient
+    /* @formatter:off */
+        (
+        final String sedex_sender_id,
+        final String sedex_dir_outbox,
+        final Path   origin,
+        final String sedex_message_id,
+        final int    j,
+        final String sedex_recipient_id
+        ) throws IOException
+    /* @formatter:on */
+        {
+        
+        final String fileDATA     = "data_" + sedex_message_id + "-E" + j + ".zip";
+        final String fileENVELOPE = "envl_" + sedex_message_id + "-E" + j + ".xml";
+        
+        // Umschlaege hinzufuegen
+        File   envelopefile               = new File("stage/" + fileENVELOPE);
+        String sedex_message_id_completed = sedex_message_id + "-E" + j;
+        Processing_SingleInput_CreateEnvelope.process(envelopefile, sedex_message_id_completed, sedex_sender_id, sedex_recipient_id);
+        
+        // In Outbox kopieren
+        
+        // Die Reihenfolge des Verschiebens ist wichtig: es wird
+        // zuerst das Datenfile verschoben und dann erst das Envelopefile.
+        // Warum? Weil es zur Meldung "No payload found" kommt, wenn der
+        // Sedex-Client nur ein Envelopefile ohne Datenfile antrifft. Denn
+        // in Sedex ist es erlaubt, nur einen Umschlag ohne Datenfile zu
+        // versenden. Natuerlich wuerde der "No payload found"-Fall nur
+        // dann eintreten, wenn der Sedex-Client genau waehrend des
+        // vorliegenden Schreibprozesses pollt.
+        
+        Processing_SingleInput_FanOut.deliver_data(origin, Paths.get("stage/" + fileDATA), Paths.get(sedex_dir_outbox + "/"
+                + fileDATA));
+        FileTransfer.move(Paths.get("stage/" + fileENVELOPE), Paths.get(sedex_dir_outbox + "/"
+                + fileENVELOPE));
+                
+        }
+        
+    /**
+     * Writes the ZIP file with the ZipOutputStream (used for compressed entries and for STORED entries which need the
+     * ZIP64 extensions).
+     * 
+     * @param  file             The input file.
+     * @param  name             The name of the ZIP entry.
+     * @param  sedex_message_id The sedex message id to be used.
+     * @param  zip_compression  Indicator which indicates whether the entry should be compressed or not.
+     * @param  zip_level        The compression level (1-9).
+     * @throws IOException      IO operation fails.
+     */
+    private static void write_zip(final File file, final String name, final String sedex_message_id, final boolean zip_compression, final int zip_level) throws IOException
+        {
+        
+        ZipEntry                ze                  = new ZipEntry(name);
         FileOutputStream        fos                 = new FileOutputStream("stage/data_" + sedex_message_id + ".zip");
         ZipOutputStream         zipout              = new ZipOutputStream(new BufferedOutputStream(fos));
         
+        if (zip_compression)
+            {
+            zipout.setLevel(zip_level);
+            }
+        
         if (!zip_compression)
             {
             // Vgl. Seite 183 von Elliotte Rusty Harold:
@@ -111,16 +366,7 @@ public class Processing_SingleInput
             ze.setCompressedSize(file.length());
             ze.setTime(file.lastModified());
             
-            CRC32           crc32 = new CRC32();
-            FileInputStream fis   = new FileInputStream(file);
-            byte[]          data  = new byte[4096];
-            int             len;
-            while ((len = fis.read(data)) > -1)
-                {
-                crc32.update(data, 0, len);
-                }
-            fis.close();
-            ze.setCrc(crc32.getValue());
+            ze.setCrc(FileTransfer.crc32(file.toPath()));
             
             // System.out.println("size="+file.length());
             // System.out.println("crc32="+crc32.getValue());
@@ -129,64 +375,19 @@ public class Processing_SingleInput
         zipout.putNextEntry(ze);
         
         // Schreiben des Files
-        FileInputStream fis  = new FileInputStream(file);
-        byte[]          tmp  = new byte[4 * 1024];
-        int             size = 0;
-        while ((size = fis.read(tmp)) != -1)
-            {
-            zipout.write(tmp, 0, size);
-            }
-            
+        FileTransfer.copy(file.toPath(), zipout);
+        
         zipout.closeEntry();
         
+        // Das ZIP-File muss auf der Platte sein, bevor es im Journal als
+        // geschrieben gilt (vgl. Processing_Journal.zipped).
+        zipout.finish();
         zipout.flush();
+        fos.getChannel().force(false);
+        
         zipout.close();
-        fos.flush();
         fos.close();
         
-        fis.close();
-        
-        // Eine Kopie des ZIP-Files
-        Path origin = Paths.get("stage/data_" + sedex_message_id + ".zip");
-        
-        // wird fuer jeden Empfaenger erstellt:
-        for (int j = sedex_recipient_ids.size() - 1; j >= 0; j--)
-            {
-            final String fileDATA     = "data_" + sedex_message_id + "-E" + j + ".zip";
-            final String fileENVELOPE = "envl_" + sedex_message_id + "-E" + j + ".xml";
-            
-            Files.copy(origin, Paths.get("stage/" + fileDATA), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            
-            // Umschlaege hinzufuegen
-            File   envelopefile               = new File("stage/" + fileENVELOPE);
-            String sedex_message_id_completed = sedex_message_id + "-E" + j;
-            String sedex_recipient_id         = sedex_recipient_ids.get(j);
-            Processing_SingleInput_CreateEnvelope.process(envelopefile, sedex_message_id_completed, sedex_sender_id, sedex_recipient_id);
-            
-            // In Outbox kopieren
-            
-            // Die Reihenfolge des Verschiebens ist wichtig: es wird
-            // zuerst das Datenfile verschoben und dann erst das Envelopefile.
-            // Warum? Weil es zur Meldung "No payload found" kommt, wenn der
-            // Sedex-Client nur ein Envelopefile ohne Datenfile antrifft. Denn
-            // in Sedex ist es erlaubt, nur einen Umschlag ohne Datenfile zu
-            // versenden. Natuerlich wuerde der "No payload found"-Fall nur
-            // dann eintreten, wenn der Sedex-Client genau waehrend des
-            // vorliegenden Schreibprozesses pollt.
-            
-            Files.move(Paths.get("stage/" + fileDATA), Paths.get(sedex_dir_outbox + "/"
-                    + fileDATA), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            Files.move(Paths.get("stage/" + fileENVELOPE), Paths.get(sedex_dir_outbox + "/"
-                    + fileENVELOPE), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            
-            }
-        
-        // Loeschung des Vorlage ZIPs
-        Files.delete(origin);
-        
-        // Loeschung des Original-Datenfiles
-        file.delete();
-        
         }
         
     }
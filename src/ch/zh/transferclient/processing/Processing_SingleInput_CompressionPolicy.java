@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+/**
+ * This class is used to decide whether an input file should be compressed (DEFLATED) or not (STORED).
+ *
+ * The decision is based on a sample at the beginning of the file: The sample is compressed and the ratio between the
+ * compressed and the uncompressed size is used as an estimate for the whole file. Files which are already compressed
+ * (e.g. xlsx, zip, parquet) hardly get smaller and are therefore stored.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_SingleInput_CompressionPolicy
+    
+    {
+    
+    /** Size of the sample at the beginning of the file. */
+    private static final int      SAMPLE_SIZE = 4 * 1024 * 1024;
+    
+    /** Files whose estimated ratio (compressed / uncompressed) exceeds this value are stored. */
+    protected static final double MAX_RATIO   = 0.9;
+    
+    /**
+     * Constructs a Processing_SingleInput_CompressionPolicy object.
+     */
+    private Processing_SingleInput_CompressionPolicy()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Estimates the compression ratio of an input file.
+     *
+     * @param  file        The input file.
+     * @param  level       The compression level (1-9).
+     * @return             The estimated ratio between the compressed and the uncompressed size (1.0 for an empty file).
+     * @throws IOException IO operation fails.
+     */
+    protected static double estimate_ratio(final File file, final int level) throws IOException
+        {
+        
+        // Lesen der Stichprobe
+        final ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, file.length()));
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+            while (sample.hasRemaining() && (in.read(sample) != -1))
+                {
+                // weiterlesen, bis die Stichprobe voll oder das Fileende erreicht ist
+                }
+            }
+            
+        if (sample.position() == 0)
+            {
+            return 1.0;
+            }
+            
+        // Komprimieren der Stichprobe (nur die Groesse ist von Interesse)
+        final Deflater deflater = new Deflater(level, true);
+        try
+            {
+            deflater.setInput(sample.array(), 0, sample.position());
+            deflater.finish();
+            final byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished())
+                {
+                deflater.deflate(buffer);
+                }
+            return (double) deflater.getBytesWritten() / (double) deflater.getBytesRead();
+            }
+        finally
+            {
+            deflater.end();
+            }
+            
+        }
+        
+    }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import ch.zh.transferclient.util.FileTransfer;
+
+/**
+ * This class is used to place the payload ZIP file of a message into the sedex outbox once per recipient.
+ *
+ * Instead of writing a full copy of the payload for every recipient, the copies are created as hard links of the ZIP
+ * file in the stage folder whenever possible. Only if no link can be created, the payload is copied (see
+ * FileTransfer).
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_SingleInput_FanOut
+    
+    {
+    
+    /**
+     * Constructs a Processing_SingleInput_FanOut object.
+     */
+    private Processing_SingleInput_FanOut()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Places the payload ZIP file of one recipient into the sedex outbox.
+     *
+     * @param  origin        The payload ZIP file in the stage folder (is left untouched).
+     * @param  stage_copy    The path of the recipient-specific copy within the stage folder.
+     * @param  outbox_target The path of the recipient-specific data file within the sedex outbox.
+     * @throws IOException   IO operation fails.
+     */
+    protected static void deliver_data(final Path origin, final Path stage_copy, final Path outbox_target) throws IOException
+        {
+        
+        // FALL 1: Stage-Ordner und Outbox liegen auf dem gleichen Volume.
+        // Das Datenfile wird direkt als Hardlink in der Outbox angelegt.
+        // Es werden dabei keine Daten geschrieben, und das Datenfile
+        // erscheint in der Outbox in einem einzigen Schritt (atomar).
+        try
+            {
+            Files.deleteIfExists(outbox_target);
+            Files.createLink(outbox_target, origin);
+            return;
+            }
+        catch (UnsupportedOperationException | IOException e)
+            {
+            // z.B. Outbox auf einem anderen Volume (Netzlaufwerk)
+            }
+            
+        // FALL 2: Die Outbox liegt auf einem anderen Volume.
+        // Im Stage-Ordner wird ein Hardlink erstellt (bzw. falls das
+        // Filesystem keine Hardlinks unterstuetzt, eine Kopie), der
+        // danach in die Outbox verschoben wird.
+        try
+            {
+            Files.deleteIfExists(stage_copy);
+            Files.createLink(stage_copy, origin);
+            }
+        catch (UnsupportedOperationException | IOException e)
+            {
+            FileTransfer.copy(origin, stage_copy);
+            }
+            
+        FileTransfer.move(stage_copy, outbox_target);
+        
+        }
+        
+    }
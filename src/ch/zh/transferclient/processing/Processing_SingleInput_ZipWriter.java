@@ -0,0 +1,520 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.processing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import ch.zh.transferclient.util.FileTransfer;
+
+/**
+ * This class is used to write a ZIP file with a single entry in a single pass.
+ *
+ * The ZipOutputStream requires the CRC-32 of a STORED entry before the entry is written, i.e. the input file would have
+ * to be read twice. The present writer writes the local file header with a provisional CRC-32, computes the CRC-32
+ * while the data is streamed and patches the local file header afterwards through the FileChannel. Every byte of the
+ * input file is thus read only once.
+ *
+ * DEFLATED entries can be compressed on several threads (as done by pigz): The input file is split into blocks which are
+ * compressed independently by raw Deflaters. Each block is primed with the last 32 KB of the preceding block as preset
+ * dictionary and terminated with a SYNC_FLUSH (only the last block is finished), so that the concatenation of the
+ * compressed blocks is one single valid deflate stream which can be read by any ZIP reader.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class Processing_SingleInput_ZipWriter
+    
+    {
+    
+    /** Largest file size which can be written without the ZIP64 extensions. */
+    protected static final long ZIP64_LIMIT      = 0xFFFFFFFFL;
+    
+    /** Signature of the local file header. */
+    private static final int    SIG_LOCAL_HEADER = 0x04034b50;
+    
+    /** Signature of the central directory header. */
+    private static final int    SIG_CENTRAL_DIR  = 0x02014b50;
+    
+    /** Signature of the end of central directory record. */
+    private static final int    SIG_END_OF_DIR   = 0x06054b50;
+    
+    /** Version needed to extract a STORED entry (1.0). */
+    private static final short  VERSION_STORED   = 10;
+    
+    /** Version needed to extract a DEFLATED entry (2.0). */
+    private static final short  VERSION_DEFLATED = 20;
+    
+    /** Compression method STORED. */
+    private static final short  METHOD_STORED    = 0;
+    
+    /** Compression method DEFLATED. */
+    private static final short  METHOD_DEFLATED  = 8;
+    
+    /** Size of the blocks which are compressed in parallel. */
+    protected static final int  BLOCK_SIZE       = 1024 * 1024;
+    
+    /** Size of the deflate window, i.e. of the preset dictionary of a block. */
+    private static final int    DICTIONARY_SIZE  = 32 * 1024;
+    
+    /** General purpose flag: file name is encoded in UTF-8 (as written by the ZipOutputStream). */
+    private static final short  FLAG_UTF8        = 0x0800;
+    
+    /** Offset of the CRC-32 within the local file header. */
+    private static final int    OFFSET_CRC       = 14;
+    
+    /**
+     * Constructs a Processing_SingleInput_ZipWriter object.
+     */
+    private Processing_SingleInput_ZipWriter()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Writes a ZIP file which contains the input file as a single STORED entry.
+     *
+     * @param  file        The input file.
+     * @param  entry_name  The name of the entry.
+     * @param  zipfile     The ZIP file to be written.
+     * @throws IOException IO operation fails.
+     */
+    protected static void write_stored(final File file, final String entry_name, final Path zipfile) throws IOException
+        {
+        
+        final byte[] name     = entry_name.getBytes(StandardCharsets.UTF_8);
+        final int    dos_time = to_dos_time(file.lastModified());
+        
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(zipfile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+            
+            // Lokaler Header mit provisorischer CRC-32 und Groesse
+            write_fully(out, local_header(name, dos_time, METHOD_STORED, 0, 0, 0));
+            
+            // Daten streamen und dabei CRC-32 und Groesse bestimmen
+            final CRC32      crc32  = new CRC32();
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(FileTransfer.BUFFER_SIZE);
+            long             size   = 0;
+            while (in.read(buffer) != -1)
+                {
+                buffer.flip();
+                size += buffer.remaining();
+                if (size > ZIP64_LIMIT)
+                    {
+                    throw new IOException("File too large for a ZIP file without ZIP64 extensions: " + file);
+                    }
+                crc32.update(buffer.duplicate());
+                write_fully(out, buffer);
+                buffer.clear();
+                }
+                
+            finish(out, name, dos_time, METHOD_STORED, crc32.getValue(), size, size);
+            }
+            
+        }
+        
+    /**
+     * Writes a ZIP file which contains the input file as a single DEFLATED entry. The blocks of the input file are
+     * compressed in parallel.
+     *
+     * @param  file        The input file.
+     * @param  entry_name  The name of the entry.
+     * @param  zipfile     The ZIP file to be written.
+     * @param  parallelism The number of threads used for the compression.
+     * @param  level       The compression level (0-9).
+     * @throws IOException IO operation fails.
+     */
+    protected static void write_deflated_parallel(final File file, final String entry_name, final Path zipfile, final int parallelism, final int level) throws IOException
+        {
+        
+        final byte[]       name     = entry_name.getBytes(StandardCharsets.UTF_8);
+        final int          dos_time = to_dos_time(file.lastModified());
+        final ForkJoinPool pool     = new ForkJoinPool(parallelism);
+        
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(zipfile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+            
+            // Lokaler Header mit provisorischer CRC-32 und Groessen
+            write_fully(out, local_header(name, dos_time, METHOD_DEFLATED, 0, 0, 0));
+            
+            // Es werden hoechstens doppelt so viele Bloecke im Speicher
+            // gehalten, wie Threads vorhanden sind.
+            final ArrayDeque<Future<byte[]>> pending         = new ArrayDeque<Future<byte[]>>();
+            final int                        max_pending     = 2 * parallelism;
+            final CRC32                      crc32           = new CRC32();
+            long                             size            = 0;
+            long                             compressed_size = 0;
+            
+            // Die Bloecke werden sequentiell gelesen (inkl. CRC-32) und
+            // parallel komprimiert. Da erst nach dem Lesen des naechsten
+            // Blocks feststeht, ob ein Block der letzte ist, wird jeweils
+            // ein Block vorausgelesen.
+            byte[] previous = null;
+            byte[] current  = read_block(in);
+            while (true)
+                {
+                final byte[]  next = (current.length == BLOCK_SIZE) ? read_block(in) : null;
+                final boolean last = (next == null) || (next.length == 0);
+                
+                crc32.update(current);
+                size += current.length;
+                if (size > ZIP64_LIMIT)
+                    {
+                    throw new IOException("File too large for a ZIP file without ZIP64 extensions: " + file);
+                    }
+                    
+                pending.add(pool.submit(new DeflateBlock(current, previous, last, level)));
+                
+                // Die komprimierten Bloecke werden in der urspruenglichen
+                // Reihenfolge geschrieben.
+                while ((pending.size() >= max_pending) || (last && !pending.isEmpty()))
+                    {
+                    final byte[] compressed = get(pending.poll());
+                    compressed_size += compressed.length;
+                    if (compressed_size > ZIP64_LIMIT)
+                        {
+                        throw new IOException("File too large for a ZIP file without ZIP64 extensions: " + file);
+                        }
+                    write_fully(out, ByteBuffer.wrap(compressed));
+                    }
+                    
+                if (last)
+                    {
+                    break;
+                    }
+                    
+                previous = current;
+                current  = next;
+                }
+                
+            finish(out, name, dos_time, METHOD_DEFLATED, crc32.getValue(), compressed_size, size);
+            }
+        finally
+            {
+            pool.shutdownNow();
+            }
+            
+        }
+        
+    /**
+     * Compresses a single block of the input file with a raw Deflater.
+     */
+    private static class DeflateBlock implements Callable<byte[]>
+        
+        {
+        
+        /** The uncompressed block. */
+        private final byte[]  data;
+        
+        /** The preceding block (null for the first block). */
+        private final byte[]  previous;
+        
+        /** Indicator which indicates whether this is the last block. */
+        private final boolean last;
+        
+        /** The compression level. */
+        private final int     level;
+        
+        /**
+         * Constructs a DeflateBlock object.
+         *
+         * @param data     The uncompressed block.
+         * @param previous The preceding block (null for the first block).
+         * @param last     Indicator which indicates whether this is the last block.
+         * @param level    The compression level.
+         */
+        private DeflateBlock(final byte[] data, final byte[] previous, final boolean last, final int level)
+            {
+            this.data     = data;
+            this.previous = previous;
+            this.last     = last;
+            this.level    = level;
+            }
+            
+        /**
+         * Compresses the block.
+         *
+         * @return The compressed block.
+         */
+        @Override
+        public byte[] call()
+            {
+            final Deflater deflater = new Deflater(this.level, true);
+            try
+                {
+                // Vorbelegung mit dem Ende des vorhergehenden Blocks, damit
+                // Wiederholungen ueber die Blockgrenze hinweg gefunden werden.
+                if (this.previous != null)
+                    {
+                    final int length = Math.min(DICTIONARY_SIZE, this.previous.length);
+                    deflater.setDictionary(this.previous, this.previous.length - length, length);
+                    }
+                deflater.setInput(this.data);
+                
+                final ByteArrayOutputStream out    = new ByteArrayOutputStream(this.data.length / 2 + 64);
+                final byte[]                buffer = new byte[64 * 1024];
+                
+                if (this.last)
+                    {
+                    deflater.finish();
+                    while (!deflater.finished())
+                        {
+                        out.write(buffer, 0, deflater.deflate(buffer));
+                        }
+                    }
+                else
+                    {
+                    // SYNC_FLUSH schliesst den Block auf einer Bytegrenze ab,
+                    // ohne den Deflate-Stream zu beenden.
+                    int len;
+                    do
+                        {
+                        len = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        out.write(buffer, 0, len);
+                        }
+                    while (len == buffer.length);
+                    }
+                    
+                return out.toByteArray();
+                }
+            finally
+                {
+                deflater.end();
+                }
+            }
+            
+        }
+        
+    /**
+     * Reads the next block of the input file.
+     *
+     * @param  in          The channel of the input file.
+     * @return             The block (shorter than BLOCK_SIZE at the end of the file, empty if the end has been reached).
+     * @throws IOException IO operation fails.
+     */
+    private static byte[] read_block(final FileChannel in) throws IOException
+        {
+        final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        while (buffer.hasRemaining() && (in.read(buffer) != -1))
+            {
+            // weiterlesen, bis der Block voll oder das Fileende erreicht ist
+            }
+        return (buffer.position() == BLOCK_SIZE) ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+        }
+        
+    /**
+     * Waits for a compressed block.
+     *
+     * @param  future      The future of the compression task.
+     * @return             The compressed block.
+     * @throws IOException The compression has failed or the thread has been interrupted.
+     */
+    private static byte[] get(final Future<byte[]> future) throws IOException
+        {
+        try
+            {
+            return future.get();
+            }
+        catch (InterruptedException e)
+            {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("ZIP compression interrupted");
+            }
+        catch (ExecutionException e)
+            {
+            throw new IOException("ZIP compression failed", e.getCause());
+            }
+        }
+        
+    /**
+     * Patches the local file header with the final CRC-32 and sizes and writes the central directory.
+     *
+     * @param  out             The channel of the ZIP file (positioned at the end of the data).
+     * @param  name            The encoded name of the entry.
+     * @param  dos_time        The modification time of the entry (MS-DOS format).
+     * @param  method          The compression method of the entry.
+     * @param  crc             The CRC-32 of the entry.
+     * @param  compressed_size The compressed size of the entry.
+     * @param  size            The uncompressed size of the entry.
+     * @throws IOException     IO operation fails.
+     */
+    private static void finish(final FileChannel out, final byte[] name, final int dos_time, final short method, final long crc, final long compressed_size, final long size) throws IOException
+        {
+        
+        final long data_end = out.position();
+        
+        // Nachtraegliches Setzen von CRC-32 und Groessen im lokalen Header
+        final ByteBuffer patch = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        patch.putInt((int) crc);
+        patch.putInt((int) compressed_size);
+        patch.putInt((int) size);
+        patch.flip();
+        while (patch.hasRemaining())
+            {
+            out.write(patch, OFFSET_CRC + (12 - patch.remaining()));
+            }
+            
+        // Zentrales Verzeichnis und Abschluss
+        out.position(data_end);
+        write_fully(out, central_directory(name, dos_time, method, crc, compressed_size, size, data_end));
+        
+        // Das ZIP-File muss auf der Platte sein, bevor es im Journal als
+        // geschrieben gilt (vgl. Processing_Journal.zipped).
+        out.force(false);
+        
+        }
+        
+    /**
+     * Produces the local file header.
+     *
+     * @param  name            The encoded name of the entry.
+     * @param  dos_time        The modification time of the entry (MS-DOS format).
+     * @param  method          The compression method of the entry.
+     * @param  crc             The CRC-32 of the entry.
+     * @param  compressed_size The compressed size of the entry.
+     * @param  size            The uncompressed size of the entry.
+     * @return                 The local file header.
+     */
+    private static ByteBuffer local_header(final byte[] name, final int dos_time, final short method, final long crc, final long compressed_size, final long size)
+        {
+        ByteBuffer b = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(SIG_LOCAL_HEADER);
+        b.putShort(version(method));      // version needed to extract
+        b.putShort(FLAG_UTF8);            // general purpose bit flag
+        b.putShort(method);               // compression method
+        b.putInt(dos_time);               // last mod file time and date
+        b.putInt((int) crc);              // crc-32
+        b.putInt((int) compressed_size);  // compressed size
+        b.putInt((int) size);             // uncompressed size
+        b.putShort((short) name.length);  // file name length
+        b.putShort((short) 0);            // extra field length
+        b.put(name);
+        b.flip();
+        return b;
+        }
+        
+    /**
+     * Produces the central directory (with a single entry) and the end of central directory record.
+     *
+     * @param  name            The encoded name of the entry.
+     * @param  dos_time        The modification time of the entry (MS-DOS format).
+     * @param  method          The compression method of the entry.
+     * @param  crc             The CRC-32 of the entry.
+     * @param  compressed_size The compressed size of the entry.
+     * @param  size            The uncompressed size of the entry.
+     * @param  offset          The offset of the central directory.
+     * @return                 The central directory and the end of central directory record.
+     */
+    private static ByteBuffer central_directory(final byte[] name, final int dos_time, final short method, final long crc, final long compressed_size, final long size, final long offset)
+        {
+        final int  central_size = 46 + name.length;
+        ByteBuffer b            = ByteBuffer.allocate(central_size + 22).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(SIG_CENTRAL_DIR);
+        b.putShort(version(method));      // version made by
+        b.putShort(version(method));      // version needed to extract
+        b.putShort(FLAG_UTF8);            // general purpose bit flag
+        b.putShort(method);               // compression method
+        b.putInt(dos_time);               // last mod file time and date
+        b.putInt((int) crc);              // crc-32
+        b.putInt((int) compressed_size);  // compressed size
+        b.putInt((int) size);             // uncompressed size
+        b.putShort((short) name.length);  // file name length
+        b.putShort((short) 0);            // extra field length
+        b.putShort((short) 0);            // file comment length
+        b.putShort((short) 0);            // disk number start
+        b.putShort((short) 0);            // internal file attributes
+        b.putInt(0);                      // external file attributes
+        b.putInt(0);                      // relative offset of local header
+        b.put(name);
+        
+        b.putInt(SIG_END_OF_DIR);
+        b.putShort((short) 0);            // number of this disk
+        b.putShort((short) 0);            // disk where central directory starts
+        b.putShort((short) 1);            // number of central directory records on this disk
+        b.putShort((short) 1);            // total number of central directory records
+        b.putInt(central_size);           // size of central directory
+        b.putInt((int) offset);           // offset of start of central directory
+        b.putShort((short) 0);            // comment length
+        b.flip();
+        return b;
+        }
+        
+    /**
+     * Returns the version needed to extract an entry.
+     *
+     * @param  method The compression method of the entry.
+     * @return        The version needed to extract the entry.
+     */
+    private static short version(final short method)
+        {
+        return (method == METHOD_DEFLATED) ? VERSION_DEFLATED : VERSION_STORED;
+        }
+        
+    /**
+     * Converts a Java time to the MS-DOS date and time format (as done by ZipEntry.setTime).
+     *
+     * @param  millis The time in milliseconds.
+     * @return        The time in MS-DOS format (date in the upper 16 bits).
+     */
+    private static int to_dos_time(final long millis)
+        {
+        LocalDateTime ldt = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (ldt.getYear() < 1980)
+            {
+            return (1 << 21) | (1 << 16);
+            }
+        return ((ldt.getYear() - 1980) << 25) | (ldt.getMonthValue() << 21) | (ldt.getDayOfMonth() << 16)
+                | (ldt.getHour() << 11) | (ldt.getMinute() << 5) | (ldt.getSecond() >> 1);
+        }
+        
+    /**
+     * Writes the whole content of a buffer to a channel.
+     *
+     * @param  channel     The channel to write to.
+     * @param  buffer      The buffer to be written.
+     * @throws IOException IO operation fails.
+     */
+    private static void write_fully(final FileChannel channel, final ByteBuffer buffer) throws IOException
+        {
+        while (buffer.hasRemaining())
+            {
+            channel.write(buffer);
+            }
+        }
+        
+    }
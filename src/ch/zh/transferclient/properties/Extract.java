@@ -35,9 +35,39 @@ public class Extract
     /** Delay in milliseconds between the termination of one execution and the commencement of the next. */
     private final String delay;
     
+    /** Maximum number of input files which are processed within one execution. */
+    private final String batch_size;
+    
+    /** Time budget in milliseconds of one execution. */
+    private final String batch_time_budget;
+    
+    /** Maximum number of receipt files which are processed within one execution. */
+    private final String receipts_batch_size;
+    
+    /** Indicator which indicates whether the folders should be watched (java.nio WatchService) or not. */
+    private final String watchservice;
+    
+    /** Delay in milliseconds between two safety sweeps when the folders are watched. */
+    private final String watchservice_sweep_delay;
+    
+    /** Time window in milliseconds during which an input file must not change before it is processed. */
+    private final String stability_window;
+    
     /** Indicator which indicates whether the files should be compressed or not. */
     private final String zip_compression;
     
+    /** Compression level (0-9) used if the files are compressed. */
+    private final String zip_compression_level;
+    
+    /** Indicator which indicates whether the compression should be chosen per file (sample based) or not. */
+    private final String zip_compression_adaptive;
+    
+    /** Number of threads used to compress an input file. */
+    private final String zip_parallelism;
+    
+    /** Number of zip workers of the input pipeline (0 means sequential processing). */
+    private final String pipeline_zip_workers;
+    
     /**
      * Indicator which indicates whether the log should be overwritten for every new session or not.
      */
@@ -46,6 +76,23 @@ public class Extract
      * Indicator which indicates whether debug messages in the log should be suppressed or not.
      */
     private final String log_suppress_debug;
+    
+    /** Indicator which indicates whether log messages should be written by a background thread. */
+    private final String log_async;
+    
+    /**
+     * Indicator which indicates whether the log should be flushed immediately after an error (asynchronous logging).
+     */
+    private final String log_flush_on_error;
+    
+    /** Maximum size of the log file in MB (0: no rotation because of the size). */
+    private final String log_rotate_size;
+    
+    /** Indicator which indicates whether the log file should be rotated at midnight. */
+    private final String log_rotate_daily;
+    
+    /** Number of compressed log files which are kept (0: all). */
+    private final String log_retention;
     /**
      * Indicator which indicates whether transmitted files should be archived or not.
      */
@@ -81,6 +128,54 @@ public class Extract
         return this.delay;
         }
     
+    /**
+     * @return Maximum number of input files which are processed within one execution.
+     */
+    protected String get_batch_size()
+        {
+        return this.batch_size;
+        }
+    
+    /**
+     * @return Time budget in milliseconds of one execution.
+     */
+    protected String get_batch_time_budget()
+        {
+        return this.batch_time_budget;
+        }
+    
+    /**
+     * @return Maximum number of receipt files which are processed within one execution.
+     */
+    protected String get_receipts_batch_size()
+        {
+        return this.receipts_batch_size;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the folders should be watched (java.nio WatchService) or not.
+     */
+    protected String get_watchservice()
+        {
+        return this.watchservice;
+        }
+    
+    /**
+     * @return Delay in milliseconds between two safety sweeps when the folders are watched.
+     */
+    protected String get_watchservice_sweep_delay()
+        {
+        return this.watchservice_sweep_delay;
+        }
+    
+    /**
+     * @return Time window in milliseconds during which an input file must not change before it is processed.
+     */
+    protected String get_stability_window()
+        {
+        return this.stability_window;
+        }
+    
     /**
      * @return Indicator which indicates whether the files should be compressed or not.
      */
@@ -88,6 +183,38 @@ public class Extract
         {
         return this.zip_compression;
         }
+    
+    /**
+     * @return Compression level (0-9) used if the files are compressed.
+     */
+    protected String get_zip_compression_level()
+        {
+        return this.zip_compression_level;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the compression should be chosen per file (sample based) or not.
+     */
+    protected String get_zip_compression_adaptive()
+        {
+        return this.zip_compression_adaptive;
+        }
+    
+    /**
+     * @return Number of threads used to compress an input file.
+     */
+    protected String get_zip_parallelism()
+        {
+        return this.zip_parallelism;
+        }
+    
+    /**
+     * @return Number of zip workers of the input pipeline (0 means sequential processing).
+     */
+    protected String get_pipeline_zip_workers()
+        {
+        return this.pipeline_zip_workers;
+        }
         
     /**
      * @return Indicator which indicates whether the log should be overwritten for every new session or not.
@@ -104,6 +231,47 @@ public class Extract
         {
         return this.log_suppress_debug;
         }
+    
+    /**
+     * @return Indicator which indicates whether log messages should be written by a background thread.
+     */
+    protected String get_log_async()
+        {
+        return this.log_async;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the log should be flushed immediately after an error (asynchronous
+     *         logging).
+     */
+    protected String get_log_flush_on_error()
+        {
+        return this.log_flush_on_error;
+        }
+    
+    /**
+     * @return Maximum size of the log file in MB (0: no rotation because of the size).
+     */
+    protected String get_log_rotate_size()
+        {
+        return this.log_rotate_size;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the log file should be rotated at midnight.
+     */
+    protected String get_log_rotate_daily()
+        {
+        return this.log_rotate_daily;
+        }
+    
+    /**
+     * @return Number of compressed log files which are kept (0: all).
+     */
+    protected String get_log_retention()
+        {
+        return this.log_retention;
+        }
         
     /**
      * @return Indicator which indicates whether transmitted files should be archived or not.
@@ -178,10 +346,25 @@ public class Extract
         {
         
         String              delay                           = "";
+        String              batch_size                      = "";
+        String              batch_time_budget               = "";
+        String              receipts_batch_size             = "";
+        String              watchservice                    = "";
+        String              watchservice_sweep_delay        = "";
+        String              stability_window                = "";
         String              zip_compression                 = "";
+        String              zip_compression_level           = "";
+        String              zip_compression_adaptive        = "";
+        String              zip_parallelism                 = "";
+        String              pipeline_zip_workers            = "";
         
         String              log_overwrite                   = "";
         String              log_suppress_debug              = "";
+        String              log_async                       = "";
+        String              log_flush_on_error              = "";
+        String              log_rotate_size                 = "";
+        String              log_rotate_daily                = "";
+        String              log_retention                   = "";
         String              archive_datafiles               = "";
         
         String              language                        = "";
@@ -226,6 +409,48 @@ public class Extract
                             delay = paare[1].trim();
                             }
                         }
+                    else if (parameter.equals("batch_size"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            batch_size = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("batch_time_budget"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            batch_time_budget = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("receipts_batch_size"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            receipts_batch_size = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("watchservice"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            watchservice = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("watchservice_sweep_delay"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            watchservice_sweep_delay = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("stability_window"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            stability_window = paare[1].trim();
+                            }
+                        }
                     else if (parameter.equals("zip_compression"))
                         {
                         if (paare.length > 1)
@@ -233,6 +458,34 @@ public class Extract
                             zip_compression = paare[1].trim();
                             }
                         }
+                    else if (parameter.equals("zip_compression_level"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            zip_compression_level = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("zip_compression_adaptive"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            zip_compression_adaptive = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("zip_parallelism"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            zip_parallelism = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("pipeline_zip_workers"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            pipeline_zip_workers = paare[1].trim();
+                            }
+                        }
                     else if (parameter.equals("log_overwrite"))
                         {
                         if (paare.length > 1)
@@ -247,6 +500,41 @@ public class Extract
                             log_suppress_debug = paare[1].trim();
                             }
                         }
+                    else if (parameter.equals("log_async"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            log_async = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("log_flush_on_error"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            log_flush_on_error = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("log_rotate_size"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            log_rotate_size = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("log_rotate_daily"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            log_rotate_daily = paare[1].trim();
+                            }
+                        }
+                    else if (parameter.equals("log_retention"))
+                        {
+                        if (paare.length > 1)
+                            {
+                            log_retention = paare[1].trim();
+                            }
+                        }
                     else if (parameter.equals("archive_datafiles"))
                         {
                         if (paare.length > 1)
@@ -353,10 +641,25 @@ public class Extract
         stream.close();
         
         this.delay                           = delay;
+        this.batch_size                      = batch_size;
+        this.batch_time_budget               = batch_time_budget;
+        this.receipts_batch_size             = receipts_batch_size;
+        this.watchservice                    = watchservice;
+        this.watchservice_sweep_delay        = watchservice_sweep_delay;
+        this.stability_window                = stability_window;
         this.zip_compression                 = zip_compression;
+        this.zip_compression_level           = zip_compression_level;
+        this.zip_compression_adaptive        = zip_compression_adaptive;
+        this.zip_parallelism                 = zip_parallelism;
+        this.pipeline_zip_workers            = pipeline_zip_workers;
         
         this.log_overwrite                   = log_overwrite;
         this.log_suppress_debug              = log_suppress_debug;
+        this.log_async                       = log_async;
+        this.log_flush_on_error              = log_flush_on_error;
+        this.log_rotate_size                 = log_rotate_size;
+        this.log_rotate_daily                = log_rotate_daily;
+        this.log_retention                   = log_retention;
         this.archive_datafiles               = archive_datafiles;
         
         this.language                        = language;
@@ -43,10 +43,39 @@ public class Properties
     /** The delay in milliseconds between the termination of one execution and the commencement of the next. */
     private final long              delay;                    // Konfigurierbar im Konfigurationsfile
     
+    /** Maximum number of input files which are processed within one execution. */
+    private final int               batch_size;               // Konfigurierbar im Konfigurationsfile
+    
+    /** Time budget in milliseconds of one execution (no further input file is started once it is exceeded). */
+    private final long              batch_time_budget;        // Konfigurierbar im Konfigurationsfile
+    
+    /** Maximum number of receipt files which are processed within one execution. */
+    private final int               receipts_batch_size;      // Konfigurierbar im Konfigurationsfile
+    
+    /** Indicator which indicates whether the folders should be watched (java.nio WatchService) or not. */
+    private final boolean           watchservice;             // Konfigurierbar im Konfigurationsfile
+    
+    /** Delay in milliseconds between two safety sweeps when the folders are watched. */
+    private final long              watchservice_sweep_delay; // Konfigurierbar im Konfigurationsfile
+    
+    /** Time window in milliseconds during which an input file must not change before it is processed. */
+    private final long              stability_window;         // Konfigurierbar im Konfigurationsfile
     
     /** Indicator which indicates whether the files should be compressed or not. */
     private final boolean           zip_compression;          // Konfigurierbar im Konfigurationsfile
     
+    /** Compression level (0-9) used if the files are compressed. */
+    private final int               zip_compression_level;    // Konfigurierbar im Konfigurationsfile
+    
+    /** Indicator which indicates whether the compression should be chosen per file (sample based) or not. */
+    private final boolean           zip_compression_adaptive; // Konfigurierbar im Konfigurationsfile
+    
+    /** Number of threads used to compress an input file. */
+    private final int               zip_parallelism;          // Konfigurierbar im Konfigurationsfile
+    
+    /** Number of zip workers of the input pipeline (0 means sequential processing). */
+    private final int               pipeline_zip_workers;     // Konfigurierbar im Konfigurationsfile
+    
     /**
      * Indicator which indicates whether the log should be overwritten for every new session or not.
      */
@@ -55,6 +84,23 @@ public class Properties
      * Indicator which indicates whether debug messages in the log should be suppressed or not.
      */
     private final boolean           log_suppress_debug;       // Konfigurierbar im Konfigurationsfile
+    
+    /** Indicator which indicates whether log messages should be written by a background thread. */
+    private final boolean           log_async;                // Konfigurierbar im Konfigurationsfile
+    
+    /**
+     * Indicator which indicates whether the log should be flushed immediately after an error (asynchronous logging).
+     */
+    private final boolean           log_flush_on_error;       // Konfigurierbar im Konfigurationsfile
+    
+    /** Maximum size of the log file in MB (0: no rotation because of the size). */
+    private final int               log_rotate_size;          // Konfigurierbar im Konfigurationsfile
+    
+    /** Indicator which indicates whether the log file should be rotated at midnight. */
+    private final boolean           log_rotate_daily;         // Konfigurierbar im Konfigurationsfile
+    
+    /** Number of compressed log files which are kept (0: all). */
+    private final int               log_retention;            // Konfigurierbar im Konfigurationsfile
     /**
      * Indicator which indicates whether transmitted files should be archived or not.
      */
@@ -99,6 +145,54 @@ public class Properties
         return this.delay;
         }
     
+    /**
+     * @return Maximum number of input files which are processed within one execution.
+     */
+    public int get_batch_size()
+        {
+        return this.batch_size;
+        }
+    
+    /**
+     * @return Time budget in milliseconds of one execution.
+     */
+    public long get_batch_time_budget()
+        {
+        return this.batch_time_budget;
+        }
+    
+    /**
+     * @return Maximum number of receipt files which are processed within one execution.
+     */
+    public int get_receipts_batch_size()
+        {
+        return this.receipts_batch_size;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the folders should be watched (java.nio WatchService) or not.
+     */
+    public boolean get_watchservice()
+        {
+        return this.watchservice;
+        }
+    
+    /**
+     * @return Delay in milliseconds between two safety sweeps when the folders are watched.
+     */
+    public long get_watchservice_sweep_delay()
+        {
+        return this.watchservice_sweep_delay;
+        }
+    
+    /**
+     * @return Time window in milliseconds during which an input file must not change before it is processed.
+     */
+    public long get_stability_window()
+        {
+        return this.stability_window;
+        }
+    
     /**
      * @return Indicator which indicates whether the files should be compressed or not.
      */
@@ -106,6 +200,38 @@ public class Properties
         {
         return this.zip_compression;
         }
+    
+    /**
+     * @return Compression level (0-9) used if the files are compressed.
+     */
+    public int get_zip_compression_level()
+        {
+        return this.zip_compression_level;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the compression should be chosen per file (sample based) or not.
+     */
+    public boolean get_zip_compression_adaptive()
+        {
+        return this.zip_compression_adaptive;
+        }
+    
+    /**
+     * @return Number of threads used to compress an input file.
+     */
+    public int get_zip_parallelism()
+        {
+        return this.zip_parallelism;
+        }
+    
+    /**
+     * @return Number of zip workers of the input pipeline (0 means sequential processing).
+     */
+    public int get_pipeline_zip_workers()
+        {
+        return this.pipeline_zip_workers;
+        }
         
     /**
      * @return Indicator which indicates whether the log should be overwritten for every new session or not.
@@ -122,6 +248,47 @@ public class Properties
         {
         return this.log_suppress_debug;
         }
+    
+    /**
+     * @return Indicator which indicates whether log messages should be written by a background thread.
+     */
+    public boolean get_log_async()
+        {
+        return this.log_async;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the log should be flushed immediately after an error (asynchronous
+     *         logging).
+     */
+    public boolean get_log_flush_on_error()
+        {
+        return this.log_flush_on_error;
+        }
+    
+    /**
+     * @return Maximum size of the log file in MB (0: no rotation because of the size).
+     */
+    public int get_log_rotate_size()
+        {
+        return this.log_rotate_size;
+        }
+    
+    /**
+     * @return Indicator which indicates whether the log file should be rotated at midnight.
+     */
+    public boolean get_log_rotate_daily()
+        {
+        return this.log_rotate_daily;
+        }
+    
+    /**
+     * @return Number of compressed log files which are kept (0: all).
+     */
+    public int get_log_retention()
+        {
+        return this.log_retention;
+        }
         
     /**
      * @return Indicator which indicates whether transmitted files should be archived or not.
@@ -211,12 +378,31 @@ public class Properties
      * Constructs a new properties object.
      * 
      * @param delay                   Delay in milliseconds between the termination of one execution and the commencement of the next.
+     * @param batch_size              Maximum number of input files which are processed within one execution.
+     * @param batch_time_budget       Time budget in milliseconds of one execution.
+     * @param receipts_batch_size     Maximum number of receipt files which are processed within one execution.
+     * @param watchservice            Indicator which indicates whether the folders should be watched or not.
+     * @param watchservice_sweep_delay Delay in milliseconds between two safety sweeps when the folders are watched.
+     * @param stability_window        Time window in milliseconds during which an input file must not change before it
+     *                                is processed.
      * @param zip_compression         Indicator which indicates whether the files should be compressed or not.
+     * @param zip_compression_level   Compression level (0-9) used if the files are compressed.
+     * @param zip_compression_adaptive Indicator which indicates whether the compression should be chosen per file (sample
+     *                                based) or not.
+     * @param zip_parallelism         Number of threads used to compress an input file.
+     * @param pipeline_zip_workers    Number of zip workers of the input pipeline (0 means sequential processing).
      * 
      * @param log_overwrite           Indicator which indicates whether the log should be overwritten for every new
      *                                session or not.
      * @param log_suppress_debug      Indicator which indicates whether debug messages in the log should be suppressed
      *                                or not.
+     * @param log_async               Indicator which indicates whether log messages should be written by a background
+     *                                thread.
+     * @param log_flush_on_error      Indicator which indicates whether the log should be flushed immediately after an
+     *                                error (asynchronous logging).
+     * @param log_rotate_size         Maximum size of the log file in MB (0: no rotation because of the size).
+     * @param log_rotate_daily        Indicator which indicates whether the log file should be rotated at midnight.
+     * @param log_retention           Number of compressed log files which are kept (0: all).
      * @param archive_datafiles       Indicator which indicates whether transmitted files should be archived or not.
      * 
      * @param language                Language to be used in the graphical user interface.
@@ -235,9 +421,24 @@ public class Properties
     /* @formatter:off */
         (
         long    delay,
+        int     batch_size,
+        long    batch_time_budget,
+        int     receipts_batch_size,
+        boolean watchservice,
+        long    watchservice_sweep_delay,
+        long    stability_window,
         boolean zip_compression,
+        int     zip_compression_level,
+        boolean zip_compression_adaptive,
+        int     zip_parallelism,
+        int     pipeline_zip_workers,
         boolean log_overwrite,
         boolean log_suppress_debug,
+        boolean log_async,
+        boolean log_flush_on_error,
+        int     log_rotate_size,
+        boolean log_rotate_daily,
+        int     log_retention,
         boolean archive_datafiles,
         Language language,
         String sedex_sender_id,
@@ -252,10 +453,25 @@ public class Properties
         {
         
         this.delay                  = delay;
+        this.batch_size             = batch_size;
+        this.batch_time_budget      = batch_time_budget;
+        this.receipts_batch_size    = receipts_batch_size;
+        this.watchservice           = watchservice;
+        this.watchservice_sweep_delay = watchservice_sweep_delay;
+        this.stability_window       = stability_window;
         this.zip_compression        = zip_compression;
+        this.zip_compression_level  = zip_compression_level;
+        this.zip_compression_adaptive = zip_compression_adaptive;
+        this.zip_parallelism        = zip_parallelism;
+        this.pipeline_zip_workers   = pipeline_zip_workers;
         
         this.log_overwrite          = log_overwrite;
         this.log_suppress_debug     = log_suppress_debug;
+        this.log_async              = log_async;
+        this.log_flush_on_error     = log_flush_on_error;
+        this.log_rotate_size        = log_rotate_size;
+        this.log_rotate_daily       = log_rotate_daily;
+        this.log_retention          = log_retention;
         this.archive_datafiles      = archive_datafiles;
         
         this.language               = language;
@@ -52,10 +52,25 @@ public class PropertiesReader
         Extract extract                        = new Extract();
         
         String  delay_string                   = extract.get_delay();
+        String  batch_size_string              = extract.get_batch_size();
+        String  batch_time_budget_string       = extract.get_batch_time_budget();
+        String  receipts_batch_size_string     = extract.get_receipts_batch_size();
+        String  watchservice_string            = extract.get_watchservice();
+        String  watchservice_sweep_delay_string = extract.get_watchservice_sweep_delay();
+        String  stability_window_string        = extract.get_stability_window();
         String  zip_compression_string         = extract.get_zip_compression();
+        String  zip_compression_level_string   = extract.get_zip_compression_level();
+        String  zip_compression_adaptive_string = extract.get_zip_compression_adaptive();
+        String  zip_parallelism_string         = extract.get_zip_parallelism();
+        String  pipeline_zip_workers_string    = extract.get_pipeline_zip_workers();
         
         String  log_overwrite_string           = extract.get_log_overwrite();
         String  log_suppress_debug_string      = extract.get_log_suppress_debug();
+        String  log_async_string               = extract.get_log_async();
+        String  log_flush_on_error_string      = extract.get_log_flush_on_error();
+        String  log_rotate_size_string         = extract.get_log_rotate_size();
+        String  log_rotate_daily_string        = extract.get_log_rotate_daily();
+        String  log_retention_string           = extract.get_log_retention();
         String  archive_datafiles_string       = extract.get_archive_datafiles();
         
         String  language_string                = extract.get_language();
@@ -86,6 +101,88 @@ public class PropertiesReader
             delay = 10;
             }
         
+        // Batch size
+        int batch_size = 100;
+        try
+            {
+            batch_size = Integer.valueOf(batch_size_string);
+            }
+        catch (Exception e)
+            {
+            batch_size = 100;
+            }
+        if (batch_size < 1)
+            {
+            batch_size = 1;
+            }
+        
+        // Batch time budget
+        long batch_time_budget = 10000;
+        try
+            {
+            batch_time_budget = Long.valueOf(batch_time_budget_string);
+            }
+        catch (Exception e)
+            {
+            batch_time_budget = 10000;
+            }
+        if (batch_time_budget < 1)
+            {
+            batch_time_budget = 1;
+            }
+        
+        // Receipts batch size
+        int receipts_batch_size = 500;
+        try
+            {
+            receipts_batch_size = Integer.valueOf(receipts_batch_size_string);
+            }
+        catch (Exception e)
+            {
+            receipts_batch_size = 500;
+            }
+        if (receipts_batch_size < 1)
+            {
+            receipts_batch_size = 1;
+            }
+        
+        // WatchService testen
+        boolean watchservice = true;
+        if (watchservice_string.toLowerCase().equals("false"))
+            {
+            watchservice = false;
+            }
+        
+        // Sweep delay
+        long watchservice_sweep_delay = 10000;
+        try
+            {
+            watchservice_sweep_delay = Long.valueOf(watchservice_sweep_delay_string);
+            }
+        catch (Exception e)
+            {
+            watchservice_sweep_delay = 10000;
+            }
+        if (watchservice_sweep_delay < 1)
+            {
+            watchservice_sweep_delay = 10000;
+            }
+        
+        // Stability window
+        long stability_window = 2000;
+        try
+            {
+            stability_window = Long.valueOf(stability_window_string);
+            }
+        catch (Exception e)
+            {
+            stability_window = 2000;
+            }
+        if (stability_window < 0)
+            {
+            stability_window = 2000;
+            }
+        
         // ZIP compression testen
         boolean zip_compression                = true;
         if (zip_compression_string.toLowerCase().equals("false"))
@@ -93,6 +190,58 @@ public class PropertiesReader
             zip_compression = false;
             }
             
+        // ZIP compression level
+        int zip_compression_level = 6;
+        try
+            {
+            zip_compression_level = Integer.valueOf(zip_compression_level_string);
+            }
+        catch (Exception e)
+            {
+            zip_compression_level = 6;
+            }
+        if ((zip_compression_level < 0) || (zip_compression_level > 9))
+            {
+            zip_compression_level = 6;
+            }
+        
+        // ZIP compression adaptive testen
+        boolean zip_compression_adaptive = false;
+        if (zip_compression_adaptive_string.toLowerCase().equals("true"))
+            {
+            zip_compression_adaptive = true;
+            }
+        
+        // ZIP parallelism
+        int zip_parallelism = 1;
+        try
+            {
+            zip_parallelism = Integer.valueOf(zip_parallelism_string);
+            }
+        catch (Exception e)
+            {
+            zip_parallelism = 1;
+            }
+        if (zip_parallelism < 1)
+            {
+            zip_parallelism = 1;
+            }
+        
+        // Pipeline zip workers
+        int pipeline_zip_workers = 0;
+        try
+            {
+            pipeline_zip_workers = Integer.valueOf(pipeline_zip_workers_string);
+            }
+        catch (Exception e)
+            {
+            pipeline_zip_workers = 0;
+            }
+        if (pipeline_zip_workers < 0)
+            {
+            pipeline_zip_workers = 0;
+            }
+        
         // Log overwrite testen
         boolean log_overwrite = false;
         if (log_overwrite_string.toLowerCase().equals("true"))
@@ -107,6 +256,58 @@ public class PropertiesReader
             log_suppress_debug = false;
             }
             
+        // Asynchrones Logging testen
+        boolean log_async = false;
+        if (log_async_string.toLowerCase().equals("true"))
+            {
+            log_async = true;
+            }
+            
+        // Flush bei Fehlern testen
+        boolean log_flush_on_error = true;
+        if (log_flush_on_error_string.toLowerCase().equals("false"))
+            {
+            log_flush_on_error = false;
+            }
+            
+        // Groesse fuer die Rotation des Logs (standardmaessig keine Rotation,
+        // damit bestehende Installationen ihre Logs unveraendert behalten)
+        int log_rotate_size = 0;
+        try
+            {
+            log_rotate_size = Integer.valueOf(log_rotate_size_string);
+            }
+        catch (Exception e)
+            {
+            log_rotate_size = 0;
+            }
+        if (log_rotate_size < 0)
+            {
+            log_rotate_size = 0;
+            }
+            
+        // Taegliche Rotation des Logs testen
+        boolean log_rotate_daily = false;
+        if (log_rotate_daily_string.toLowerCase().equals("true"))
+            {
+            log_rotate_daily = true;
+            }
+            
+        // Anzahl aufbewahrter Log-Archive (standardmaessig alle)
+        int log_retention = 0;
+        try
+            {
+            log_retention = Integer.valueOf(log_retention_string);
+            }
+        catch (Exception e)
+            {
+            log_retention = 0;
+            }
+        if (log_retention < 0)
+            {
+            log_retention = 0;
+            }
+            
         // Archive testen
         boolean archive_datafiles = true;
         if (archive_datafiles_string.toLowerCase().equals("false"))
@@ -301,7 +502,7 @@ public class PropertiesReader
             number_of_table_entries = 1;
             }
             
-        Properties properties = new Properties(delay, zip_compression, log_overwrite, log_suppress_debug, archive_datafiles, language, sedex_sender_id, sedex_recipient_id, sedex_dir_outbox, sedex_dir_receipts, folder_results, target_time, number_of_table_entries);
+        Properties properties = new Properties(delay, batch_size, batch_time_budget, receipts_batch_size, watchservice, watchservice_sweep_delay, stability_window, zip_compression, zip_compression_level, zip_compression_adaptive, zip_parallelism, pipeline_zip_workers, log_overwrite, log_suppress_debug, log_async, log_flush_on_error, log_rotate_size, log_rotate_daily, log_retention, archive_datafiles, language, sedex_sender_id, sedex_recipient_id, sedex_dir_outbox, sedex_dir_receipts, folder_results, target_time, number_of_table_entries);
         
         return properties;
         
@@ -75,6 +75,87 @@ public class PropertiesWriter
             bw.newLine();
             bw.newLine();
             
+            bw.write("# BATCH_SIZE ");
+            bw.newLine();
+            bw.write("# Maximum number of input files which are processed within one execution of the task.");
+            bw.newLine();
+            bw.write("# Default value: 100");
+            bw.newLine();
+            bw.write("BATCH_SIZE="+properties.get_batch_size());
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# BATCH_TIME_BUDGET ");
+            bw.newLine();
+            bw.write("# Time budget in milliseconds of one execution of the task. Once it is exceeded, no further input file");
+            bw.newLine();
+            bw.write("# is started and the remaining files are processed during the next execution. At least one file is");
+            bw.newLine();
+            bw.write("# processed per execution, even if the budget is exhausted before (minimum value: 1).");
+            bw.newLine();
+            bw.write("# Default value: 10000");
+            bw.newLine();
+            bw.write("BATCH_TIME_BUDGET="+properties.get_batch_time_budget());
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# RECEIPTS_BATCH_SIZE ");
+            bw.newLine();
+            bw.write("# Maximum number of receipt files which are processed within one execution of the task (within the time");
+            bw.newLine();
+            bw.write("# budget BATCH_TIME_BUDGET). The protocols are updated once at the end of every execution.");
+            bw.newLine();
+            bw.write("# Default value: 500");
+            bw.newLine();
+            bw.write("RECEIPTS_BATCH_SIZE="+properties.get_receipts_batch_size());
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# WATCHSERVICE ");
+            bw.newLine();
+            bw.write("# Valid values: TRUE, FALSE");
+            bw.newLine();
+            bw.write("# Default value: TRUE");
+            bw.newLine();
+            bw.write("# TRUE means the following:  New files in the results and receipts folders are detected by a java.nio WatchService.");
+            bw.newLine();
+            bw.write("#                            Polling is only used as a safety sweep (see WATCHSERVICE_SWEEP_DELAY).");
+            bw.newLine();
+            bw.write("# FALSE means the following: New files are detected by polling only (see DELAY).");
+            bw.newLine();
+            if (properties.get_watchservice())
+                {
+                bw.write("WATCHSERVICE=TRUE");
+                }
+            else
+                {
+                bw.write("WATCHSERVICE=FALSE");
+                }
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# WATCHSERVICE_SWEEP_DELAY ");
+            bw.newLine();
+            bw.write("# Delay in milliseconds between two safety sweeps if WATCHSERVICE=TRUE.");
+            bw.newLine();
+            bw.write("# Default value: 10000");
+            bw.newLine();
+            bw.write("WATCHSERVICE_SWEEP_DELAY="+properties.get_watchservice_sweep_delay());
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# STABILITY_WINDOW ");
+            bw.newLine();
+            bw.write("# Time window in milliseconds during which the size and the modification time of an input file must not change");
+            bw.newLine();
+            bw.write("# before the file is processed (files which are still being written by an external system are skipped).");
+            bw.newLine();
+            bw.write("# Default value: 2000");
+            bw.newLine();
+            bw.write("STABILITY_WINDOW="+properties.get_stability_window());
+            bw.newLine();
+            bw.newLine();
+            
             bw.write("# ZIP_COMPRESSION ");
             bw.newLine();
             bw.write("# Default value: TRUE");
@@ -90,6 +171,69 @@ public class PropertiesWriter
                 
             bw.newLine();
             bw.newLine();
+            
+            bw.write("# ZIP_COMPRESSION_LEVEL ");
+            bw.newLine();
+            bw.write("# Compression level if ZIP_COMPRESSION=TRUE (0 = no compression, 1 = fastest, 9 = smallest files).");
+            bw.newLine();
+            bw.write("# Default value: 6");
+            bw.newLine();
+            bw.write("ZIP_COMPRESSION_LEVEL="+properties.get_zip_compression_level());
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# ZIP_COMPRESSION_ADAPTIVE ");
+            bw.newLine();
+            bw.write("# Valid values: TRUE, FALSE");
+            bw.newLine();
+            bw.write("# Default value: FALSE");
+            bw.newLine();
+            bw.write("# TRUE means the following:  If ZIP_COMPRESSION=TRUE, the first 4 MB of every input file are compressed as a sample.");
+            bw.newLine();
+            bw.write("#                            Files which would hardly get smaller (e.g. xlsx, zip, parquet) are not compressed.");
+            bw.newLine();
+            bw.write("# FALSE means the following: If ZIP_COMPRESSION=TRUE, every input file is compressed.");
+            bw.newLine();
+            if (properties.get_zip_compression_adaptive())
+                {
+                bw.write("ZIP_COMPRESSION_ADAPTIVE=TRUE");
+                }
+            else
+                {
+                bw.write("ZIP_COMPRESSION_ADAPTIVE=FALSE");
+                }
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# ZIP_PARALLELISM ");
+            bw.newLine();
+            bw.write("# Number of threads used to compress an input file if ZIP_COMPRESSION=TRUE. With a value greater than 1,");
+            bw.newLine();
+            bw.write("# files larger than 1 MB are split into blocks which are compressed in parallel. The result is an ordinary");
+            bw.newLine();
+            bw.write("# ZIP file which can be read by every ZIP program.");
+            bw.newLine();
+            bw.write("# Default value: 1");
+            bw.newLine();
+            bw.write("ZIP_PARALLELISM="+properties.get_zip_parallelism());
+            bw.newLine();
+            bw.newLine();
+            
+            bw.write("# PIPELINE_ZIP_WORKERS ");
+            bw.newLine();
+            bw.write("# Number of threads which write ZIP files if the input files are processed in a staged pipeline.");
+            bw.newLine();
+            bw.write("# 0 means that the input files are processed one after the other (as in previous versions). With a value");
+            bw.newLine();
+            bw.write("# greater than 0, the stages stabilise, archive, zip and outbox run on separate threads, so that e.g. one");
+            bw.newLine();
+            bw.write("# file can be zipped while the previous one is moved to the outbox.");
+            bw.newLine();
+            bw.write("# Default value: 0");
+            bw.newLine();
+            bw.write("PIPELINE_ZIP_WORKERS="+properties.get_pipeline_zip_workers());
+            bw.newLine();
+            bw.newLine();
             bw.newLine();
             
             bw.write("# ################################## #");
@@ -143,6 +287,98 @@ public class PropertiesWriter
                 }
                 
             bw.newLine();
+            bw.write("# LOG_ASYNC ");
+            bw.newLine();
+            bw.write("# Valid values:  TRUE, FALSE");
+            bw.newLine();
+            bw.write("# Default value: FALSE");
+            bw.newLine();
+            bw.write("# TRUE means the following:  Log messages are queued and written (and flushed) in batches by a background thread. ");
+            bw.newLine();
+            bw.write("# FALSE means the following: Log messages are written and flushed immediately by the thread which logs them. ");
+            bw.newLine();
+            if (properties.get_log_async())
+                {
+                bw.write("LOG_ASYNC=TRUE");
+                bw.newLine();
+                }
+            else
+                {
+                bw.write("LOG_ASYNC=FALSE");
+                bw.newLine();
+                }
+                
+            bw.newLine();
+            bw.write("# LOG_FLUSH_ON_ERROR ");
+            bw.newLine();
+            bw.write("# Valid values:  TRUE, FALSE");
+            bw.newLine();
+            bw.write("# Default value: TRUE");
+            bw.newLine();
+            bw.write("# Only relevant if LOG_ASYNC=TRUE.");
+            bw.newLine();
+            bw.write("# TRUE means the following:  The log is flushed as soon as an error has been logged. ");
+            bw.newLine();
+            bw.write("# FALSE means the following: Errors are flushed together with the other log messages. ");
+            bw.newLine();
+            if (properties.get_log_flush_on_error())
+                {
+                bw.write("LOG_FLUSH_ON_ERROR=TRUE");
+                bw.newLine();
+                }
+            else
+                {
+                bw.write("LOG_FLUSH_ON_ERROR=FALSE");
+                bw.newLine();
+                }
+                
+            bw.newLine();
+            bw.write("# LOG_ROTATE_SIZE ");
+            bw.newLine();
+            bw.write("# Maximum size of the log file in MB. A larger log file is closed, compressed (gzip) in the background");
+            bw.newLine();
+            bw.write("# and continued in a new file. 0 means that the log file is not rotated because of its size.");
+            bw.newLine();
+            bw.write("# Default value: 0");
+            bw.newLine();
+            bw.write("LOG_ROTATE_SIZE="+properties.get_log_rotate_size());
+            bw.newLine();
+            bw.newLine();
+            bw.write("# LOG_ROTATE_DAILY ");
+            bw.newLine();
+            bw.write("# Valid values:  TRUE, FALSE");
+            bw.newLine();
+            bw.write("# Default value: FALSE");
+            bw.newLine();
+            bw.write("# TRUE means the following:  The log file is closed, compressed (gzip) and continued in a new file at midnight. ");
+            bw.newLine();
+            bw.write("# FALSE means the following: The log file is not rotated at midnight. ");
+            bw.newLine();
+            if (properties.get_log_rotate_daily())
+                {
+                bw.write("LOG_ROTATE_DAILY=TRUE");
+                bw.newLine();
+                }
+            else
+                {
+                bw.write("LOG_ROTATE_DAILY=FALSE");
+                bw.newLine();
+                }
+                
+            bw.newLine();
+            bw.write("# LOG_RETENTION ");
+            bw.newLine();
+            bw.write("# Number of compressed (rotated) log files which are kept in the log folder. Older files are deleted");
+            bw.newLine();
+            bw.write("# in the background after a rotation. 0 means that all compressed log files are kept.");
+            bw.newLine();
+            bw.write("# Only rotated log files (*.rotated.log.gz) are deleted, never the log files of the sessions.");
+            bw.newLine();
+            bw.write("# Default value: 0");
+            bw.newLine();
+            bw.write("LOG_RETENTION="+properties.get_log_retention());
+            bw.newLine();
+            bw.newLine();
             
             bw.write("# ARCHIVE_DATAFILES ");
             bw.newLine();
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * This class is used to copy and move files.
+ *
+ * Copies are made with FileChannel.transferTo, so that the operating system can transfer the data without copying it
+ * through the Java heap (e.g. sendfile or copy_file_range). Where the bytes have to be processed by Java (ZIP streams,
+ * checksums), large buffers are used instead of the former 4 KB buffers. Moves are done as a rename whenever possible;
+ * only a move to another volume falls back to a copy.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class FileTransfer
+    
+    {
+    
+    /** Size of the buffers used where the bytes have to be processed by Java. */
+    public static final int BUFFER_SIZE = 256 * 1024;
+    
+    /**
+     * Constructs a FileTransfer object.
+     */
+    private FileTransfer()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Copies a file with FileChannel.transferTo. An existing target file is replaced.
+     *
+     * @param  source      The file to be copied.
+     * @param  target      The copy.
+     * @throws IOException IO operation fails, or the file has become shorter during the copy.
+     */
+    public static void copy(final Path source, final Path target) throws IOException
+        {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+            final long size     = in.size();
+            long       position = 0;
+            boolean    stalled  = false;
+            while (position < size)
+                {
+                // transferTo kann weniger Bytes als verlangt uebertragen
+                // (z.B. unter Windows max. 2 GB pro Aufruf).
+                final long transferred = in.transferTo(position, size - position, out);
+                position += transferred;
+                
+                // Wird nichts mehr uebertragen, ist das File waehrend des
+                // Kopierens gekuerzt oder ersetzt worden (oder die Groesse
+                // wurde, z.B. auf einem Netzlaufwerk, falsch gemeldet):
+                // Statt endlos weiter zu versuchen, wird abgebrochen.
+                if (transferred == 0)
+                    {
+                    if (in.size() < size)
+                        {
+                        throw new IOException("File has become shorter during the copy (" + in.size() + " instead of " + size
+                                + " bytes): " + source);
+                        }
+                    if (stalled)
+                        {
+                        throw new IOException("Copy makes no progress at byte " + position + " of " + size + ": " + source);
+                        }
+                    }
+                stalled = (transferred == 0);
+                }
+            }
+        }
+        
+    /**
+     * Moves a file. An existing target file is replaced.
+     *
+     * @param  source      The file to be moved.
+     * @param  target      The target file.
+     * @throws IOException IO operation fails.
+     */
+    public static void move(final Path source, final Path target) throws IOException
+        {
+        try
+            {
+            // Auf dem gleichen Volume handelt es sich um ein reines Umbenennen.
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        catch (AtomicMoveNotSupportedException e)
+            {
+            // Ziel auf einem anderen Volume (z.B. Outbox auf einem NAS):
+            // Kopieren und danach das Original loeschen.
+            copy(source, target);
+            Files.delete(source);
+            }
+        }
+        
+    /**
+     * Writes the content of a file to an output stream.
+     *
+     * @param  source      The file to be written.
+     * @param  out         The output stream.
+     * @throws IOException IO operation fails.
+     */
+    public static void copy(final Path source, final OutputStream out) throws IOException
+        {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ))
+            {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int              len;
+            while ((len = in.read(buffer)) != -1)
+                {
+                out.write(buffer.array(), 0, len);
+                buffer.clear();
+                }
+            }
+        }
+        
+    /**
+     * Computes the CRC-32 of a file.
+     *
+     * @param  source      The file.
+     * @return             The CRC-32 of the file.
+     * @throws IOException IO operation fails.
+     */
+    public static long crc32(final Path source) throws IOException
+        {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ))
+            {
+            final CRC32      crc32  = new CRC32();
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (in.read(buffer) != -1)
+                {
+                buffer.flip();
+                crc32.update(buffer);
+                buffer.clear();
+                }
+            return crc32.getValue();
+            }
+        }
+        
+    }
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ch.zh.transferclient.main.Logger;
+
+/**
+ * This class is used to generate collision-free time stamps for the sedex message ids.
+ *
+ * The time stamps keep the layout yyyyMMdd-HHmm-ss-SSS. If two ids are requested within the same millisecond (or if
+ * the system clock has been set back), the last issued millisecond is incremented by one, i.e. the millisecond part
+ * serves as a sequence. The last issued value is saved in a state file, so that the ids remain unique across restarts.
+ * The state file is replaced atomically (temporary file forced to the disk, then renamed). If it cannot be read, the
+ * last issued value is recovered from the ids still found in archive/data, in the stage folder and in the journal.
+ *
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ */
+public class MessageIdGenerator
+    
+    {
+    
+    /** File in which the last issued time stamp (in milliseconds) is saved. */
+    private static final Path     STATE_FILE     = Paths.get("archive/last_sedex_message_id.txt");
+    
+    /** Temporary file from which the state file is replaced. */
+    private static final Path     STATE_FILE_TMP = Paths.get("archive/last_sedex_message_id.txt.tmp");
+    
+    /** Folders whose file names contain sedex message ids (cf. read_state). */
+    private static final String[] ID_FOLDERS     = { "archive/data", "stage" };
+    
+    /** The journal whose records contain sedex message ids (cf. read_state). */
+    private static final Path     JOURNAL        = Paths.get("archive/journal.bin");
+    
+    /** Time stamp of a sedex message id (yyyyMMdd-HHmm-ss-SSS). */
+    private static final Pattern  STAMP          = Pattern.compile("\\d{8}-\\d{4}-\\d{2}-\\d{3}");
+    
+    /** The last issued time stamp in milliseconds (-1 means that the state file has not been read yet). */
+    private static long           last_millis    = -1;
+    
+    /**
+     * Constructs a MessageIdGenerator object.
+     */
+    private MessageIdGenerator()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Returns a time stamp for a sedex message id which has never been issued before.
+     *
+     * @return Time stamp for the sedex message id (yyyyMMdd-HHmm-ss-SSS).
+     */
+    public static synchronized String getstamp_for_sedex_message_id()
+        {
+        
+        if (last_millis < 0)
+            {
+            last_millis = read_state();
+            }
+            
+        // Der Zeitstempel muss streng monoton wachsen. Falls in der gleichen
+        // Millisekunde bereits eine ID vergeben worden ist, wird die
+        // naechste Millisekunde verwendet (statt wie bisher 100 ms zu warten).
+        final long now  = System.currentTimeMillis();
+        final long next = (now > last_millis) ? now : last_millis + 1;
+        
+        last_millis = next;
+        write_state(next);
+        
+        return TimeStamp.getstamp_for_sedex_message_id(next);
+        }
+        
+    /**
+     * Reads the last issued time stamp from the state file.
+     *
+     * @return The last issued time stamp in milliseconds (0 if the state file does not exist, the recovered value if
+     *         it cannot be read).
+     */
+    private static long read_state()
+        {
+        try
+            {
+            if (!Files.exists(STATE_FILE))
+                {
+                return 0;
+                }
+            String content = new String(Files.readAllBytes(STATE_FILE), StandardCharsets.UTF_8).trim();
+            return Long.parseLong(content);
+            }
+        catch (Exception e)
+            {
+            // Der Zustand ist unlesbar (z.B. nach einem Absturz waehrend
+            // des Schreibens mit einer frueheren Version): Die zuletzt
+            // vergebene ID wird aus den noch vorhandenen IDs bestimmt,
+            // mindestens aber die aktuelle Zeit verwendet.
+            Logger.error(e);
+            final long recovered = Math.max(System.currentTimeMillis(), scan_issued());
+            Logger.info("SEDEX MESSAGE ID STATE RECOVERED: " + TimeStamp.getstamp_for_sedex_message_id(recovered));
+            return recovered;
+            }
+        }
+        
+    /**
+     * Determines the latest time stamp of the sedex message ids in archive/data, in the stage folder and in the
+     * journal.
+     *
+     * @return The latest time stamp in milliseconds (0 if no id has been found).
+     */
+    private static long scan_issued()
+        {
+        
+        long latest = 0;
+        
+        for (String folder : ID_FOLDERS)
+            {
+            final String[] names = new File(folder).list();
+            if (names != null)
+                {
+                for (String name : names)
+                    {
+                    latest = Math.max(latest, latest_stamp(name));
+                    }
+                }
+            }
+            
+        // Die IDs stehen als (ASCII-)Text in den Journal-Records.
+        try
+            {
+            if (Files.exists(JOURNAL))
+                {
+                latest = Math.max(latest, latest_stamp(new String(Files.readAllBytes(JOURNAL), StandardCharsets.ISO_8859_1)));
+                }
+            }
+        catch (IOException e)
+            {
+            Logger.error(e);
+            }
+            
+        return latest;
+        
+        }
+        
+    /**
+     * @param  text A text (e.g. a file name).
+     * @return      The latest time stamp of a sedex message id within the text in milliseconds (0 if there is none).
+     */
+    private static long latest_stamp(final String text)
+        {
+        long latest = 0;
+        final Matcher matcher = STAMP.matcher(text);
+        while (matcher.find())
+            {
+            try
+                {
+                latest = Math.max(latest, TimeStamp.parse_sedex_message_id(matcher.group()));
+                }
+            catch (DateTimeParseException e)
+                {
+                // Kein gueltiger Zeitstempel
+                }
+            }
+        return latest;
+        }
+        
+    /**
+     * Writes the last issued time stamp to the state file.
+     *
+     * The value is written into a temporary file, which is forced to the disk and then renamed atomically, so that
+     * the state file always contains a complete value (also after a crash or a power failure).
+     *
+     * @param millis The last issued time stamp in milliseconds.
+     */
+    private static void write_state(final long millis)
+        {
+        try
+            {
+            try (FileChannel channel = FileChannel.open(STATE_FILE_TMP, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING))
+                {
+                final ByteBuffer buffer = ByteBuffer.wrap(String.valueOf(millis).getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining())
+                    {
+                    channel.write(buffer);
+                    }
+                channel.force(true);
+                }
+            Files.move(STATE_FILE_TMP, STATE_FILE, StandardCopyOption.ATOMIC_MOVE);
+            }
+        catch (Exception e)
+            {
+            // Falls der Zustand nicht gespeichert werden kann, bleibt die
+            // Eindeutigkeit waehrend der laufenden Session trotzdem gewaehrleistet.
+            Logger.error(e);
+            }
+        }
+        
+    }
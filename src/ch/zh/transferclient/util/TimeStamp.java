@@ -16,12 +16,18 @@
 
 package ch.zh.transferclient.util;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 /**
  * This class is used to generate TimeStamps.
  *
+ * The TimeStamps are formatted with immutable (thread-safe) java.time formatters, so the methods do not have to be
+ * synchronized. The part of a TimeStamp up to the seconds is rendered only once per second and cached; only the
+ * milliseconds are appended per call.
+ *
  * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
  * @version 2.4
  */
@@ -29,14 +35,20 @@ public class TimeStamp
     
     {
     
-    /** Date format for the sedex message id. */
-    private static final SimpleDateFormat SDF_FOR_SEDEX_MESSAGE_ID = new SimpleDateFormat("yyyyMMdd-HHmm-ss-SSS");
+    /** Zone in which the TimeStamps are formatted. */
+    private static final ZoneId            ZONE                       = ZoneId.systemDefault();
+    
+    /** Date format for the sedex message id (without the milliseconds, "yyyyMMdd-HHmm-ss-SSS"). */
+    private static final SecondCache       DTF_FOR_SEDEX_MESSAGE_ID   = new SecondCache("yyyyMMdd-HHmm-ss-");
+    
+    /** Parser for the time stamp of the sedex message id (cf. parse_sedex_message_id). */
+    private static final DateTimeFormatter DTF_PARSE_SEDEX_MESSAGE_ID = DateTimeFormatter.ofPattern("yyyyMMdd-HHmm-ss-SSS");
+    
     /** Date format for the sedex envelope. */
-    private static final SimpleDateFormat SDF_FOR_SEDEX_ENVELOPE   = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-    /** Date format for the log file. */
-    // private static final SimpleDateFormat SDF_FOR_LOGFILE = new
-    // SimpleDateFormat("yyyy_MM_dd_HH_mm_ss");
-    private static final SimpleDateFormat SDF_FOR_LOGFILE          = new SimpleDateFormat("yyyyMMdd-HHmm-ss-SSS");
+    private static final SecondCache       DTF_FOR_SEDEX_ENVELOPE     = new SecondCache("yyyy-MM-dd'T'HH:mm:ss");
+    
+    /** Date format for the log file (without the milliseconds, "yyyyMMdd-HHmm-ss-SSS"). */
+    private static final SecondCache       DTF_FOR_LOGFILE            = new SecondCache("yyyyMMdd-HHmm-ss-");
     
     /**
      * Constructs a TimeStamp object.
@@ -45,7 +57,7 @@ public class TimeStamp
         {
         //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
         }
-    
+        
     /**
      * Returns the date format for the sedex message id.
      * 
@@ -53,7 +65,31 @@ public class TimeStamp
      */
     public static String getstamp_for_sedex_message_id()
         {
-        return SDF_FOR_SEDEX_MESSAGE_ID.format(new Date());
+        return getstamp_for_sedex_message_id(System.currentTimeMillis());
+        }
+        
+    /**
+     * Returns the date format for the sedex message id of the given point of time.
+     * 
+     * @param  millis Point of time in milliseconds.
+     * @return        Date format for the sedex message id.
+     */
+    public static String getstamp_for_sedex_message_id(final long millis)
+        {
+        return with_millis(DTF_FOR_SEDEX_MESSAGE_ID.format(Math.floorDiv(millis, 1000L)), millis);
+        }
+        
+    /**
+     * Parses the time stamp of a sedex message id (inverse of getstamp_for_sedex_message_id). During the hour which
+     * occurs twice at the end of the daylight saving time, the later point of time is returned.
+     * 
+     * @param  stamp                  The time stamp (yyyyMMdd-HHmm-ss-SSS).
+     * @return                        Point of time in milliseconds.
+     * @throws DateTimeParseException The time stamp is not valid.
+     */
+    public static long parse_sedex_message_id(final String stamp)
+        {
+        return LocalDateTime.parse(stamp, DTF_PARSE_SEDEX_MESSAGE_ID).atZone(ZONE).withLaterOffsetAtOverlap().toInstant().toEpochMilli();
         }
         
     /**
@@ -63,7 +99,7 @@ public class TimeStamp
      */
     public static String getstamp_for_sedex_envelope()
         {
-        return SDF_FOR_SEDEX_ENVELOPE.format(new Date());
+        return DTF_FOR_SEDEX_ENVELOPE.format(Math.floorDiv(System.currentTimeMillis(), 1000L));
         }
         
     /**
@@ -73,7 +109,102 @@ public class TimeStamp
      */
     public static String getstamp_for_logfile()
         {
-        return SDF_FOR_LOGFILE.format(new Date());
+        final long millis = System.currentTimeMillis();
+        return with_millis(DTF_FOR_LOGFILE.format(Math.floorDiv(millis, 1000L)), millis);
+        }
+        
+    /**
+     * Appends the milliseconds (three digits) to the formatted seconds.
+     * 
+     * @param  prefix The formatted seconds.
+     * @param  millis Point of time in milliseconds.
+     * @return        The complete TimeStamp.
+     */
+    private static String with_millis(final String prefix, final long millis)
+        {
+        final int ms = (int) Math.floorMod(millis, 1000L);
+        
+        final char[] chars = new char[prefix.length() + 3];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        chars[prefix.length()]     = (char) ('0' + ms / 100);
+        chars[prefix.length() + 1] = (char) ('0' + ms / 10 % 10);
+        chars[prefix.length() + 2] = (char) ('0' + ms % 10);
+        return new String(chars);
+        }
+        
+    /**
+     * A formatter which caches the text of the last formatted second.
+     */
+    private static final class SecondCache
+        
+        {
+        
+        /** The formatter (immutable and thread-safe). */
+        private final DateTimeFormatter formatter;
+        
+        /** The last formatted second (replaced as a whole, so that second and text always belong together). */
+        private volatile Second         last = new Second(Long.MIN_VALUE, null);
+        
+        /**
+         * Constructs a SecondCache object.
+         * 
+         * @param pattern The pattern of the formatter (with a resolution of seconds).
+         */
+        private SecondCache(final String pattern)
+            {
+            this.formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZONE);
+            }
+            
+        /**
+         * Returns the text of a second.
+         * 
+         * @param  epoch_second Point of time in seconds.
+         * @return              The formatted second.
+         */
+        private String format(final long epoch_second)
+            {
+            
+            final Second cached = this.last;
+            if (cached.epoch_second == epoch_second)
+                {
+                return cached.text;
+                }
+                
+            // Bei gleichzeitigen Aufrufen wird dieselbe Sekunde allenfalls
+            // mehrfach formatiert; das Ergebnis ist aber immer dasselbe.
+            final String text = this.formatter.format(Instant.ofEpochSecond(epoch_second));
+            this.last = new Second(epoch_second, text);
+            return text;
+            
+            }
+            
+        }
+        
+    /**
+     * An immutable pair of a second and its text.
+     */
+    private static final class Second
+        
+        {
+        
+        /** Point of time in seconds. */
+        private final long   epoch_second;
+        
+        /** The formatted second. */
+        private final String text;
+        
+        /**
+         * Constructs a Second object.
+         * 
+         * @param epoch_second Point of time in seconds.
+         * @param text         The formatted second.
+         */
+        private Second(final long epoch_second, final String text)
+            {
+            this.epoch_second = epoch_second;
+            this.text         = text;
+            }
+            
         }
         
     }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018-2020 Statistisches Amt des Kantons Zürich
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.zh.transferclient.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class is used for checking the TimeStamps under contention (microbenchmark).
+ * 
+ * Several threads format random points of time concurrently with TimeStamp and compare every result with a
+ * SimpleDateFormat confined to the thread. The points of time are taken from a small range, so that the threads
+ * constantly replace the cached second of each other. Afterwards, the throughput of the current time is measured.
+ * 
+ * @author  Daniel Bierer (Statistisches Amt des Kantons Zürich)
+ * @version 2.4
+ *
+ */
+public class TimeStampBenchmark
+    
+    {
+    
+    /** Number of calls per thread. */
+    private static final int CALLS = 1_000_000;
+    
+    /**
+     * Constructs a TimeStampBenchmark object.
+     */
+    private TimeStampBenchmark()
+        {
+        //see also https://stackoverflow.com/questions/31409982/java-best-practice-class-with-only-static-methods
+        }
+        
+    /**
+     * Runs the benchmark.
+     * 
+     * @param  args      Command-line arguments (optional: number of threads).
+     * @throws Exception The threads have been interrupted.
+     */
+    public static void main(String[] args) throws Exception
+        
+        {
+        
+        final int threads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        
+        /*---------------------------------------------*/
+        /* Korrektheit: Vergleich mit SimpleDateFormat */
+        /*---------------------------------------------*/
+        
+        final AtomicLong errors = new AtomicLong();
+        final long       base   = System.currentTimeMillis();
+        long             time   = run(threads, new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                // SimpleDateFormat ist nicht thread-safe: eine Instanz pro Thread
+                final SimpleDateFormat reference = new SimpleDateFormat("yyyyMMdd-HHmm-ss-SSS");
+                for (int i = 0; i < CALLS; i++)
+                    {
+                    final long millis = base + ThreadLocalRandom.current().nextLong(-5000, 5000);
+                    if (!TimeStamp.getstamp_for_sedex_message_id(millis).equals(reference.format(new Date(millis))))
+                        {
+                        errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        System.out.println("Threads: " + threads + ", calls: " + (long) threads * CALLS + ", errors: " + errors.get()
+                + ", time (ms): " + time);
+                
+        /*----------------------------------*/
+        /* Durchsatz mit der aktuellen Zeit */
+        /*----------------------------------*/
+        
+        time = run(threads, new Runnable()
+            {
+            @Override
+            public void run()
+                {
+                for (int i = 0; i < CALLS; i++)
+                    {
+                    TimeStamp.getstamp_for_sedex_message_id();
+                    }
+                }
+            });
+        System.out.println("Throughput (calls/ms): " + (long) threads * CALLS / Math.max(1, time));
+        
+        if (errors.get() > 0)
+            {
+            System.exit(1);
+            }
+            
+        }
+        
+    /**
+     * Runs a task on several threads which start at the same time.
+     * 
+     * @param  threads              Number of threads.
+     * @param  task                 The task.
+     * @return                      Elapsed time in milliseconds.
+     * @throws InterruptedException The threads have been interrupted.
+     */
+    private static long run(final int threads, final Runnable task) throws InterruptedException
+        {
+        
+        final CountDownLatch start  = new CountDownLatch(1);
+        final Thread[]       worker = new Thread[threads];
+        for (int t = 0; t < threads; t++)
+            {
+            worker[t] = new Thread(new Runnable()
+                {
+                @Override
+                public void run()
+                    {
+                    try
+                        {
+                        start.await();
+                        }
+                    catch (InterruptedException e)
+                        {
+                        return;
+                        }
+                    task.run();
+                    }
+                });
+            worker[t].start();
+            }
+            
+        final long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : worker)
+            {
+            thread.join();
+            }
+        return (System.nanoTime() - begin) / 1_000_000L;
+        
+        }
+        
+    }